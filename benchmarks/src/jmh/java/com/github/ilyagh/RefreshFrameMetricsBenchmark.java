@@ -0,0 +1,23 @@
+package com.github.ilyagh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Overhead metrics add to every invalidation and frame of the header.
+ */
+@State(Scope.Thread)
+public class RefreshFrameMetricsBenchmark {
+
+    private final RefreshFrameMetrics metrics = new RefreshFrameMetrics();
+    private long now;
+
+    @Benchmark
+    public int recordFrame() {
+        now += 16666667L;
+        metrics.recordInvalidation(now);
+        metrics.recordFrame(now + 1000000L, 350000L, true);
+        return metrics.getFrameCount();
+    }
+}
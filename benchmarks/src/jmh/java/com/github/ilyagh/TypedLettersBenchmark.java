@@ -0,0 +1,73 @@
+package com.github.ilyagh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of typing keys, of rebuilding the letters of a line after a key is typed and of the
+ * check the draw pass makes on every frame.
+ */
+@State(Scope.Thread)
+public class TypedLettersBenchmark {
+
+    private final TypedLetters letters = new TypedLetters(TypewriterAnimationModel.PAGE_CYCLE,
+            TypewriterAnimationModel.LAST_STEP);
+
+    private final int[] builtRevisions = new int[TypewriterAnimationModel.PAGE_CYCLE];
+
+    @Setup
+    public void setUp() {
+        letters.clear();
+        for (int line = 0; line < TypewriterAnimationModel.PAGE_CYCLE; line++) {
+            for (int i = 0; i < TypewriterAnimationModel.LAST_STEP; i++) {
+                letters.addOffset(line, 12);
+                letters.addLetter(line);
+            }
+            builtRevisions[line] = letters.getRevision(line);
+        }
+    }
+
+    @Benchmark
+    public int typeKey() {
+        letters.addOffset(1, 12);
+        letters.addLetter(1);
+        letters.removeLetter(1);
+        return letters.getOffsetCount(1);
+    }
+
+    /**
+     * Same loop as the rebuild of the letter paths, minus the path calls: walks the carriage
+     * motions kept in the ring of every line. Only runs for a line whose revision changed, that
+     * is once per typed key.
+     */
+    @Benchmark
+    public int walkPage() {
+        int sum = 0;
+        for (int line = 0; line < TypewriterAnimationModel.PAGE_CYCLE; line++) {
+            int x = 0;
+            final int offsetCount = letters.getOffsetCount(line);
+            for (int i = 0; i < letters.getLetterCount(line) - 1; i++) {
+                x -= offsetCount <= i ? 0 : letters.getOffset(line, i);
+                sum += x;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * What the page text pass of the drawable does on a frame where no key was typed: compare
+     * the revision of every line with the one its path was built at.
+     */
+    @Benchmark
+    public int checkRevisions() {
+        int changed = 0;
+        for (int line = 0; line < TypewriterAnimationModel.PAGE_CYCLE; line++) {
+            if (builtRevisions[line] != letters.getRevision(line)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+}
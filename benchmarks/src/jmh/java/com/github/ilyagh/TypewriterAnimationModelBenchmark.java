@@ -0,0 +1,65 @@
+package com.github.ilyagh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of advancing the typing state machine, per frame and per full three-line cycle.
+ */
+@State(Scope.Thread)
+public class TypewriterAnimationModelBenchmark {
+
+    private static final int CARRIAGE_OFFSET_PX = 150;
+    private static final long FULL_CYCLE_MS = 8500;
+    private static final long SEED = 42L;
+
+    @Param({"60", "90", "120"})
+    public int refreshRate;
+
+    private TypewriterAnimationModel model;
+    private long frameIntervalMs;
+    private long elapsed;
+
+    @Setup
+    public void setUp() {
+        model = new TypewriterAnimationModel(SEED);
+        model.setCarriageOffset(CARRIAGE_OFFSET_PX);
+        model.start(false);
+        frameIntervalMs = Math.max(1, 1000 / refreshRate);
+        elapsed = 0;
+    }
+
+    /**
+     * One vsync worth of work: advance the model and read the frame the drawable renders.
+     */
+    @Benchmark
+    public void updateFrame(Blackhole blackhole) {
+        elapsed += frameIntervalMs;
+        model.update(elapsed);
+        final TypewriterFrame frame = model.getFrame();
+        blackhole.consume(frame.getCarriageX());
+        blackhole.consume(frame.getPressedKey());
+        blackhole.consume(frame.getPageLevel());
+    }
+
+    /**
+     * A whole refresh loop driven only at the times the model asks for a frame.
+     */
+    @Benchmark
+    public int scheduledCycle() {
+        model.start(false);
+        int frames = 0;
+        long time = 0;
+        while (time < FULL_CYCLE_MS) {
+            model.update(time);
+            frames++;
+            final long next = model.getNextFrameTime(time);
+            time = next <= time ? time + frameIntervalMs : next;
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.ilyagh;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Replays synthetic pull gestures through a {@link TypewriterRefreshLayout} and measures the
+ * touch path: how long every event takes to dispatch, how many measure and layout passes the
+ * target goes through and how often the header asks to be redrawn, so that regressions of the
+ * gesture path can be caught with the same gestures every time. See {@link GestureReplayTest}.
+ * <p>
+ * Events are dispatched synchronously on the calling thread, which must be the UI thread, with
+ * timestamps spaced by the frame interval of the given refresh rate. After every event a layout
+ * traversal is run if one has been requested, the way the next frame would. The layout must be
+ * measured and laid out before replaying and should be left to hide its header again between
+ * two replays: a release past the threshold starts refreshing. Its target must consume
+ * {@code ACTION_DOWN}, e.g. be clickable, or the layout never intercepts the gesture and the
+ * header is not dragged.
+ * </p>
+ */
+final class GestureReplay {
+
+    /**
+     * Suggested duration of a slow pull in milliseconds.
+     */
+    static final long SLOW_PULL_MS = 1200;
+    /**
+     * Suggested duration of a fast pull in milliseconds.
+     */
+    static final long FAST_PULL_MS = 120;
+    /**
+     * Suggested drag percent of a release that returns the header without refreshing.
+     */
+    static final float RELEASE_BELOW_THRESHOLD = 0.5f;
+    /**
+     * Suggested drag percent of a release that starts refreshing.
+     */
+    static final float RELEASE_ABOVE_THRESHOLD = 1.5f;
+
+    private static final float START_X = 100f;
+    private static final float START_Y = 100f;
+    /**
+     * Horizontal distance between the fingers of a multi-pointer pull.
+     */
+    private static final float POINTER_SPACING = 80f;
+
+    private GestureReplay() {
+    }
+
+    /**
+     * Pull the layout straight down and release it.
+     *
+     * @param layout         laid out layout to replay the gesture on
+     * @param refreshRateHz  rate the move events are sent at, e.g. 60, 90 or 120
+     * @param durationMs     time from touching down to releasing
+     * @param releasePercent drag percent at release, 1 being the refresh threshold
+     * @param pointerCount   number of fingers, every extra one touches down during the first
+     *                       third of the pull and lifts during the last third
+     * @return measurements of the replay
+     */
+    static Result replayPull(TypewriterRefreshLayout layout, int refreshRateHz,
+            long durationMs, float releasePercent, int pointerCount) {
+        final float distance = releasePercent * layout.getTotalDragDistance()
+                / TypewriterRefreshLayout.DRAG_RATE;
+        final long frameIntervalMs = Math.max(1, 1000 / refreshRateHz);
+        final int moveCount = (int) Math.max(1, durationMs / frameIntervalMs);
+        final int extraPointers = pointerCount - 1;
+
+        final Result result = new Result(2 + moveCount + 2 * extraPointers);
+        final int measureCount = layout.getTargetMeasureCount();
+        final int layoutCount = layout.getTargetLayoutCount();
+        final int invalidationCount = layout.getHeaderInvalidationCount();
+        result.targetTop = layout.getTargetView().getTop();
+
+        final long downTime = SystemClock.uptimeMillis();
+        final MotionEvent.PointerProperties[] properties =
+                new MotionEvent.PointerProperties[pointerCount];
+        final MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = i;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].x = START_X + i * POINTER_SPACING;
+            coords[i].pressure = 1f;
+            coords[i].size = 1f;
+        }
+
+        int down = 1;
+        replay(layout, result, properties, coords, downTime, downTime,
+                MotionEvent.ACTION_DOWN, down, START_Y);
+        for (int move = 1; move <= moveCount; move++) {
+            final long eventTime = downTime + move * frameIntervalMs;
+            final float y = START_Y + distance * move / moveCount;
+            // Extra fingers come down one after another in the first third and lift in the last
+            if (down < pointerCount && move >= (down * moveCount) / (3 * pointerCount)) {
+                replay(layout, result, properties, coords, downTime, eventTime,
+                        pointerAction(MotionEvent.ACTION_POINTER_DOWN, down), ++down, y);
+            } else if (down > 1 && move >= moveCount - moveCount / 3
+                    + (pointerCount - down) * moveCount / (3 * pointerCount)) {
+                replay(layout, result, properties, coords, downTime, eventTime,
+                        pointerAction(MotionEvent.ACTION_POINTER_UP, down - 1), down--, y);
+            }
+            replay(layout, result, properties, coords, downTime, eventTime,
+                    MotionEvent.ACTION_MOVE, down, y);
+        }
+        while (down > 1) {
+            replay(layout, result, properties, coords, downTime, downTime + durationMs,
+                    pointerAction(MotionEvent.ACTION_POINTER_UP, down - 1), down--,
+                    START_Y + distance);
+        }
+        replay(layout, result, properties, coords, downTime, downTime + durationMs,
+                MotionEvent.ACTION_UP, 1, START_Y + distance);
+
+        result.targetMeasureCount = layout.getTargetMeasureCount() - measureCount;
+        result.targetLayoutCount = layout.getTargetLayoutCount() - layoutCount;
+        result.invalidationCount = layout.getHeaderInvalidationCount() - invalidationCount;
+        return result;
+    }
+
+    private static int pointerAction(int action, int pointerIndex) {
+        return action | pointerIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT;
+    }
+
+    private static void replay(TypewriterRefreshLayout layout, Result result,
+            MotionEvent.PointerProperties[] properties, MotionEvent.PointerCoords[] coords,
+            long downTime, long eventTime, int action, int pointerCount, float y) {
+        for (int i = 0; i < pointerCount; i++) {
+            coords[i].y = y;
+        }
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, pointerCount,
+                properties, coords, 0, 0, 1f, 1f, 0, 0, 0, 0);
+        final long start = System.nanoTime();
+        layout.dispatchTouchEvent(event);
+        result.eventNanos[result.eventCount++] = System.nanoTime() - start;
+        event.recycle();
+        result.maxTargetOffset = Math.max(result.maxTargetOffset,
+                layout.getTargetView().getTop() - result.targetTop);
+
+        if (layout.isLayoutRequested()) {
+            layout.measure(
+                    View.MeasureSpec.makeMeasureSpec(layout.getWidth(), View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(layout.getHeight(), View.MeasureSpec.EXACTLY));
+            layout.layout(layout.getLeft(), layout.getTop(), layout.getRight(),
+                    layout.getBottom());
+        }
+    }
+
+    /**
+     * Measurements of one replayed gesture.
+     */
+    static final class Result {
+
+        private final long[] eventNanos;
+        private int eventCount;
+        private int targetMeasureCount;
+        private int targetLayoutCount;
+        private int invalidationCount;
+        private int targetTop;
+        private int maxTargetOffset;
+
+        private Result(int maxEventCount) {
+            eventNanos = new long[maxEventCount];
+        }
+
+        /**
+         * @return number of events dispatched
+         */
+        int getEventCount() {
+            return eventCount;
+        }
+
+        /**
+         * @param event index of the event
+         * @return time it took to dispatch the event in nanoseconds
+         */
+        long getEventNanos(int event) {
+            return eventNanos[event];
+        }
+
+        long getTotalEventNanos() {
+            long total = 0;
+            for (int i = 0; i < eventCount; i++) {
+                total += eventNanos[i];
+            }
+            return total;
+        }
+
+        long getMaxEventNanos() {
+            long max = 0;
+            for (int i = 0; i < eventCount; i++) {
+                max = Math.max(max, eventNanos[i]);
+            }
+            return max;
+        }
+
+        /**
+         * @return number of times the target was measured during the gesture
+         */
+        int getTargetMeasureCount() {
+            return targetMeasureCount;
+        }
+
+        /**
+         * @return number of times the target was laid out during the gesture
+         */
+        int getTargetLayoutCount() {
+            return targetLayoutCount;
+        }
+
+        /**
+         * @return furthest the target was pulled down during the gesture in pixels, 0 if the
+         * header was never dragged
+         */
+        int getMaxTargetOffset() {
+            return maxTargetOffset;
+        }
+
+        /**
+         * @return number of times the header asked to be redrawn during the gesture
+         */
+        int getInvalidationCount() {
+            return invalidationCount;
+        }
+
+        @Override
+        public String toString() {
+            return "GestureReplay.Result{events=" + eventCount
+                    + ", totalEventNanos=" + getTotalEventNanos()
+                    + ", maxEventNanos=" + getMaxEventNanos()
+                    + ", maxTargetOffset=" + maxTargetOffset
+                    + ", targetMeasures=" + targetMeasureCount
+                    + ", targetLayouts=" + targetLayoutCount
+                    + ", invalidations=" + invalidationCount + '}';
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.ilyagh;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays pulls at the refresh rates of current displays and checks that dragging the header
+ * neither measures nor lays out the target. Dispatch times are logged under {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GestureReplayTest {
+
+    private static final String TAG = "GestureReplayTest";
+
+    private static final int[] REFRESH_RATES_HZ = {60, 90, 120};
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Test
+    public void slowPullDoesNotLayOutTarget() {
+        for (int refreshRate : REFRESH_RATES_HZ) {
+            assertNoTargetLayout(replay(refreshRate, GestureReplay.SLOW_PULL_MS,
+                    GestureReplay.RELEASE_BELOW_THRESHOLD, 1, false));
+        }
+    }
+
+    @Test
+    public void fastPullDoesNotLayOutTarget() {
+        for (int refreshRate : REFRESH_RATES_HZ) {
+            assertNoTargetLayout(replay(refreshRate, GestureReplay.FAST_PULL_MS,
+                    GestureReplay.RELEASE_BELOW_THRESHOLD, 1, false));
+        }
+    }
+
+    @Test
+    public void multiPointerPullDoesNotLayOutTarget() {
+        for (int refreshRate : REFRESH_RATES_HZ) {
+            final GestureReplay.Result result = replay(refreshRate, GestureReplay.SLOW_PULL_MS,
+                    GestureReplay.RELEASE_BELOW_THRESHOLD, 2, false);
+            // Down, up and a pointer down and up on top of one move per frame
+            assertEquals(GestureReplay.SLOW_PULL_MS / (1000 / refreshRate) + 4,
+                    result.getEventCount());
+            assertNoTargetLayout(result);
+        }
+    }
+
+    @Test
+    public void releaseAboveThresholdStartsRefreshing() {
+        for (int refreshRate : REFRESH_RATES_HZ) {
+            final GestureReplay.Result result = replay(refreshRate, GestureReplay.SLOW_PULL_MS,
+                    GestureReplay.RELEASE_ABOVE_THRESHOLD, 1, true);
+            assertDragged(result);
+            assertTrue(result.getInvalidationCount() > 0);
+        }
+    }
+
+    private static void assertDragged(GestureReplay.Result result) {
+        assertTrue("The header was not dragged: " + result, result.getMaxTargetOffset() > 0);
+    }
+
+    private static void assertNoTargetLayout(GestureReplay.Result result) {
+        assertDragged(result);
+        assertTrue(result.getInvalidationCount() > 0);
+        assertEquals(0, result.getTargetMeasureCount());
+        assertEquals(0, result.getTargetLayoutCount());
+    }
+
+    /**
+     * Replay a pull on a new laid out layout.
+     */
+    private static GestureReplay.Result replay(final int refreshRateHz, final long durationMs,
+            final float releasePercent, final int pointerCount, final boolean expectRefreshing) {
+        final GestureReplay.Result[] result = new GestureReplay.Result[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = InstrumentationRegistry.getTargetContext();
+                final TypewriterRefreshLayout layout = new TypewriterRefreshLayout(context);
+                // A target that consumes the down event, as a list would, lets the layout
+                // intercept the rest of the gesture
+                final View target = new View(context);
+                target.setClickable(true);
+                layout.addView(target);
+                layout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                layout.layout(0, 0, WIDTH, HEIGHT);
+
+                result[0] = GestureReplay.replayPull(layout, refreshRateHz, durationMs,
+                        releasePercent, pointerCount);
+                assertEquals(expectRefreshing, layout.isRefreshing());
+            }
+        });
+        Log.i(TAG, refreshRateHz + "Hz, " + durationMs + "ms, " + pointerCount + " pointer(s), "
+                + "release at " + releasePercent + ": " + result[0]);
+        return result[0];
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.ilyagh;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Renders the refresh header offscreen at fixed drag percents and animation times with a fixed
+ * seed, timing every frame, so that it can be compared pixel by pixel with golden frames. See
+ * {@link GoldenFramesTest}.
+ * <p>
+ * Frames are drawn through the same {@link TypewriterRefreshDrawable#draw(Canvas)} as on
+ * screen, with the header fully revealed, onto white bitmaps as wide as requested and as high
+ * as the drag distance of the layout. Rendering uses its own unshared drawables and may run on
+ * any thread.
+ * </p>
+ */
+final class GoldenFrames {
+
+    /**
+     * Drag percents worth checking: on and between the sprite levels of the drag scale.
+     */
+    static final float[] DRAG_PERCENTS = {0.2f, 0.25f, 0.4f, 0.5f, 0.75f, 0.9f};
+    /**
+     * Animation times worth checking: the page feed, the carriage return of the intro, typing,
+     * a carriage return and the loop.
+     */
+    static final long[] TIMES_MS = {0, 250, 750, 1000, 1800, 3200, 4000, 8750};
+
+    private GoldenFrames() {
+    }
+
+    /**
+     * @param layout       layout whose drag distance and resources are used
+     * @param width        width of the frames in pixels
+     * @param seed         seed the typed keys are picked with
+     * @param dragPercents drag percents below 1 to render the dragged header at
+     * @param timesMs      times since the start of the refresh animation to render it at
+     * @return drag frames followed by refresh frames
+     */
+    static Frame[] render(TypewriterRefreshLayout layout, int width, long seed,
+            float[] dragPercents, long[] timesMs) {
+        final int height = layout.getTotalDragDistance();
+        final Frame[] frames = new Frame[dragPercents.length + timesMs.length];
+        final TypewriterDrawablePool.Entry entry =
+                TypewriterDrawablePool.inflateUnshared(layout.getContext(), width);
+        try {
+            final TypewriterRefreshDrawable renderer = new TypewriterRefreshDrawable(layout);
+            renderer.prepareOffscreen(entry, seed);
+            for (int i = 0; i < dragPercents.length; i++) {
+                renderer.setOffscreenFrame(dragPercents[i], 0);
+                frames[i] = render(renderer, String.format(Locale.US, "drag_%03d",
+                        Math.round(dragPercents[i] * 100)), width, height);
+            }
+            for (int i = 0; i < timesMs.length; i++) {
+                renderer.setOffscreenFrame(1f, timesMs[i]);
+                frames[dragPercents.length + i] = render(renderer,
+                        String.format(Locale.US, "refresh_%06dms", timesMs[i]), width, height);
+            }
+        } finally {
+            TypewriterDrawablePool.releaseUnshared(entry);
+        }
+        return frames;
+    }
+
+    private static Frame render(TypewriterRefreshDrawable renderer, String name, int width,
+            int height) {
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        // Opaque pixels survive the round trip through a PNG exactly, translucent ones may not
+        bitmap.eraseColor(Color.WHITE);
+        final Canvas canvas = new Canvas(bitmap);
+        final long start = System.nanoTime();
+        renderer.draw(canvas);
+        return new Frame(name, bitmap, System.nanoTime() - start);
+    }
+
+    /**
+     * Store a frame as a PNG named after it.
+     */
+    static void save(Frame frame, File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        final OutputStream out = new FileOutputStream(new File(directory, frame.getFileName()));
+        try {
+            frame.getBitmap().compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return number of pixels that differ, -1 if the sizes differ
+     */
+    static int countDifferentPixels(Bitmap actual, Bitmap golden) {
+        final int width = actual.getWidth();
+        final int height = actual.getHeight();
+        if (golden.getWidth() != width || golden.getHeight() != height) {
+            return -1;
+        }
+        final int[] actualRow = new int[width];
+        final int[] goldenRow = new int[width];
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            actual.getPixels(actualRow, 0, width, 0, y, width, 1);
+            golden.getPixels(goldenRow, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                if (actualRow[x] != goldenRow[x]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * One rendered frame.
+     */
+    static final class Frame {
+
+        private final String name;
+        private final Bitmap bitmap;
+        private final long renderNanos;
+
+        private Frame(String name, Bitmap bitmap, long renderNanos) {
+            this.name = name;
+            this.bitmap = bitmap;
+            this.renderNanos = renderNanos;
+        }
+
+        /**
+         * @return name of the frame, e.g. {@code drag_050} or {@code refresh_001000ms}
+         */
+        String getName() {
+            return name;
+        }
+
+        String getFileName() {
+            return name + ".png";
+        }
+
+        Bitmap getBitmap() {
+            return bitmap;
+        }
+
+        /**
+         * @return time it took to draw the frame in nanoseconds, including drag sprites drawn
+         * for the first time
+         */
+        long getRenderNanos() {
+            return renderNanos;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.ilyagh;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Renders the refresh header with a fixed seed and compares every frame pixel by pixel with
+ * the golden frames in {@code src/androidTest/assets/golden}. Draw times are logged under
+ * {@link #TAG}.
+ * <p>
+ * Goldens depend on the screen density and the rendering of the platform, they are recorded
+ * on the reference device, an xxhdpi API 25 emulator. A frame that differs from its golden is
+ * saved to {@code golden} in the external files directory of the test app and fails the test.
+ * The test is skipped while goldens are missing.
+ * </p>
+ * <p>
+ * To record goldens, run the test on the reference device with the instrumentation argument
+ * {@code recordGoldens true}, e.g.
+ * {@code -Pandroid.testInstrumentationRunnerArguments.recordGoldens=true}, which saves every
+ * frame to that directory. Pull it and commit its PNGs to the assets.
+ * </p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class GoldenFramesTest {
+
+    private static final String TAG = "GoldenFramesTest";
+
+    private static final long SEED = 20170401L;
+    private static final int WIDTH = 1080;
+    private static final String GOLDEN_DIRECTORY = "golden";
+    private static final String ARGUMENT_RECORD = "recordGoldens";
+
+    @Test
+    public void framesMatchGoldens() throws IOException {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final TypewriterRefreshLayout[] layout = new TypewriterRefreshLayout[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                layout[0] = new TypewriterRefreshLayout(context);
+            }
+        });
+
+        final GoldenFrames.Frame[] frames = GoldenFrames.render(layout[0], WIDTH, SEED,
+                GoldenFrames.DRAG_PERCENTS, GoldenFrames.TIMES_MS);
+        final File recorded = new File(
+                InstrumentationRegistry.getContext().getExternalFilesDir(null), GOLDEN_DIRECTORY);
+        final boolean isRecording =
+                Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString(
+                        ARGUMENT_RECORD));
+        final List<String> mismatches = new ArrayList<>();
+        final List<String> missing = new ArrayList<>();
+        for (GoldenFrames.Frame frame : frames) {
+            Log.i(TAG, frame.getName() + " drawn in " + frame.getRenderNanos() + "ns");
+            if (isRecording) {
+                GoldenFrames.save(frame, recorded);
+                frame.getBitmap().recycle();
+                continue;
+            }
+            final Bitmap golden = loadGolden(frame);
+            if (golden == null) {
+                missing.add(frame.getName());
+            } else {
+                final int differentPixels =
+                        GoldenFrames.countDifferentPixels(frame.getBitmap(), golden);
+                if (differentPixels != 0) {
+                    GoldenFrames.save(frame, recorded);
+                    mismatches.add(frame.getName() + " (" + differentPixels + " pixels)");
+                }
+                golden.recycle();
+            }
+            frame.getBitmap().recycle();
+        }
+        assertTrue("Frames differ from the goldens, see " + recorded + ": " + mismatches,
+                mismatches.isEmpty());
+        assumeTrue("Goldens recorded to " + recorded, !isRecording);
+        assumeTrue("No goldens for " + missing + ", record them with the instrumentation "
+                + "argument " + ARGUMENT_RECORD, missing.isEmpty());
+    }
+
+    /**
+     * @return golden of the frame, or null if there is none
+     */
+    private static Bitmap loadGolden(GoldenFrames.Frame frame) {
+        try {
+            final InputStream in = InstrumentationRegistry.getContext().getAssets()
+                    .open(GOLDEN_DIRECTORY + "/" + frame.getFileName());
+            try {
+                return BitmapFactory.decodeStream(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
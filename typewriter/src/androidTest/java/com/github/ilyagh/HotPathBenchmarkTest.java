@@ -0,0 +1,198 @@
+package com.github.ilyagh;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the per-frame paths that need the Android framework and so cannot run in the JMH
+ * suites of the {@code benchmarks} module: {@link TypewriterRefreshDrawable#draw(Canvas)},
+ * {@link TypewriterRefreshDrawable#setPercent(float, boolean)} during a drag and the move
+ * events of a drag through {@link TypewriterRefreshLayout}. Every path is warmed up, then run
+ * {@link #ITERATIONS} times; its time and the bytes it allocates on the Java heap per run are
+ * logged under {@link #TAG}.
+ * <p>
+ * The drawable draws onto a canvas over a single pixel, which clips every draw call away. What
+ * is measured is the work of the drawable on the UI thread, not the rasterisation that the
+ * render thread does with hardware rendering.
+ * </p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class HotPathBenchmarkTest {
+
+    private static final String TAG = "HotPathBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 1000;
+    private static final int ITERATIONS = 10000;
+    private static final long SEED = 42L;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private interface Operation {
+        void run(int iteration);
+    }
+
+    @Test
+    public void drawDraggedHeader() {
+        final TypewriterDrawablePool.Entry entry = inflateEntry();
+        try {
+            final TypewriterRefreshDrawable drawable = prepareOffscreen(entry);
+            final Canvas canvas = newStandInCanvas();
+            measure("draw, dragged", new Operation() {
+                @Override
+                public void run(int iteration) {
+                    drawable.setOffscreenFrame(getDragPercent(iteration), 0);
+                    drawable.draw(canvas);
+                }
+            });
+        } finally {
+            TypewriterDrawablePool.releaseUnshared(entry);
+        }
+    }
+
+    @Test
+    public void drawRefreshAnimation() {
+        final TypewriterDrawablePool.Entry entry = inflateEntry();
+        try {
+            final TypewriterRefreshDrawable drawable = prepareOffscreen(entry);
+            final Canvas canvas = newStandInCanvas();
+            for (long time : GoldenFrames.TIMES_MS) {
+                drawable.setOffscreenFrame(1f, time);
+                measure("draw, refreshing at " + time + "ms", new Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        drawable.draw(canvas);
+                    }
+                });
+            }
+        } finally {
+            TypewriterDrawablePool.releaseUnshared(entry);
+        }
+    }
+
+    @Test
+    public void setPercentWhileDragged() {
+        final TypewriterDrawablePool.Entry entry = inflateEntry();
+        try {
+            final TypewriterRefreshDrawable drawable = prepareOffscreen(entry);
+            drawable.setOffscreenFrame(0f, 0);
+            measure("setPercent", new Operation() {
+                @Override
+                public void run(int iteration) {
+                    drawable.setPercent(getDragPercent(iteration), true);
+                }
+            });
+        } finally {
+            TypewriterDrawablePool.releaseUnshared(entry);
+        }
+    }
+
+    @Test
+    public void moveWhileDragged() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = InstrumentationRegistry.getTargetContext();
+                final TypewriterRefreshLayout layout = new TypewriterRefreshLayout(context);
+                // A target that consumes the down event, as a list would, lets the layout
+                // intercept the moves
+                final View target = new View(context);
+                target.setClickable(true);
+                layout.addView(target);
+                layout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                layout.layout(0, 0, WIDTH, HEIGHT);
+
+                final float distance = layout.getTotalDragDistance()
+                        / TypewriterRefreshLayout.DRAG_RATE;
+                final long downTime = SystemClock.uptimeMillis();
+                dispatch(layout, downTime, downTime, MotionEvent.ACTION_DOWN, 0f);
+                // The first move past the touch slop is intercepted, the next one drags
+                dispatch(layout, downTime, downTime, MotionEvent.ACTION_MOVE,
+                        getDragPercent(0) * distance);
+                dispatch(layout, downTime, downTime, MotionEvent.ACTION_MOVE,
+                        getDragPercent(1) * distance);
+                assertTrue("The header is not dragged", target.getTop() > 0);
+                measure("move event", new Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        // Stays between the start of the drag and the refresh threshold
+                        dispatch(layout, downTime, downTime + iteration,
+                                MotionEvent.ACTION_MOVE, getDragPercent(iteration) * distance);
+                    }
+                });
+                dispatch(layout, downTime, downTime + WARMUP_ITERATIONS + ITERATIONS,
+                        MotionEvent.ACTION_CANCEL, 0f);
+            }
+        });
+    }
+
+    private static void dispatch(TypewriterRefreshLayout layout, long downTime, long eventTime,
+            int action, float y) {
+        final MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, 0f, y, 0);
+        layout.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * @return drag percent below the refresh threshold that changes on every iteration
+     */
+    private static float getDragPercent(int iteration) {
+        return 0.1f + (iteration % 80) / 100f;
+    }
+
+    private static TypewriterDrawablePool.Entry inflateEntry() {
+        return TypewriterDrawablePool.inflateUnshared(InstrumentationRegistry.getTargetContext(),
+                WIDTH);
+    }
+
+    private static TypewriterRefreshDrawable prepareOffscreen(TypewriterDrawablePool.Entry entry) {
+        final TypewriterRefreshLayout[] layout = new TypewriterRefreshLayout[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                layout[0] = new TypewriterRefreshLayout(InstrumentationRegistry.getTargetContext());
+            }
+        });
+        final TypewriterRefreshDrawable drawable = new TypewriterRefreshDrawable(layout[0]);
+        drawable.prepareOffscreen(entry, SEED);
+        return drawable;
+    }
+
+    private static Canvas newStandInCanvas() {
+        return new Canvas(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+    }
+
+    /**
+     * Warm an operation up, run it {@link #ITERATIONS} times and log its time and the bytes it
+     * allocates per run.
+     */
+    @SuppressWarnings("deprecation")
+    private static void measure(String name, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run(i);
+        }
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        final long start = System.nanoTime();
+        for (int i = WARMUP_ITERATIONS; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            operation.run(i);
+        }
+        final long nanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        final long bytes = Debug.getThreadAllocSize();
+        Log.i(TAG, name + ": " + nanos / ITERATIONS + " ns/op, "
+                + (float) bytes / ITERATIONS + " B/op");
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.ilyagh;
+
+/**
+ * Picks the quality level of the refresh animation from how late its frames come, see
+ * {@link TypewriterRefreshLayout#QUALITY_ADAPTIVE}. Frames are judged in windows of
+ * {@link #WINDOW_FRAMES}: a window with too many missed frames steps the quality down one
+ * level, a few windows in a row within budget step it back up one level.
+ */
+class AdaptiveQuality {
+
+    private static final int WINDOW_FRAMES = 16;
+    private static final int STEP_DOWN_MISSES = 4;
+    private static final int STEP_UP_MAX_MISSES = 1;
+    private static final int STEP_UP_WINDOWS = 3;
+
+    private static final long DEFAULT_FRAME_BUDGET_MS = 16;
+
+    private long frameBudgetMs = DEFAULT_FRAME_BUDGET_MS;
+    private int quality = TypewriterRefreshLayout.QUALITY_FULL;
+
+    private int windowFrames;
+    private int windowMisses;
+    private int goodWindows;
+
+    /**
+     * @param frameBudgetNanos time between two frames of the display
+     */
+    void setFrameBudgetNanos(long frameBudgetNanos) {
+        frameBudgetMs = Math.max(1L, frameBudgetNanos / 1000000L);
+    }
+
+    /**
+     * Start again from full quality.
+     */
+    void reset() {
+        quality = TypewriterRefreshLayout.QUALITY_FULL;
+        startWindow();
+        goodWindows = 0;
+    }
+
+    /**
+     * @param lateness how long after the time it was asked for the frame came, in milliseconds
+     */
+    void onFrame(long lateness) {
+        windowFrames++;
+        // Coming later than half a frame past the next vsync means at least one vsync was missed
+        if (lateness > frameBudgetMs + frameBudgetMs / 2) {
+            windowMisses++;
+        }
+        if (windowFrames < WINDOW_FRAMES) {
+            return;
+        }
+
+        if (windowMisses >= STEP_DOWN_MISSES) {
+            goodWindows = 0;
+            if (quality < TypewriterRefreshLayout.QUALITY_STATIC) {
+                quality++;
+            }
+        } else if (windowMisses > STEP_UP_MAX_MISSES) {
+            goodWindows = 0;
+        } else if (++goodWindows >= STEP_UP_WINDOWS) {
+            goodWindows = 0;
+            if (quality > TypewriterRefreshLayout.QUALITY_FULL) {
+                quality--;
+            }
+        }
+        startWindow();
+    }
+
+    int getQuality() {
+        return quality;
+    }
+
+    private void startWindow() {
+        windowFrames = 0;
+        windowMisses = 0;
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.ilyagh;
+
+import android.os.Build;
+import android.view.View;
+import java.lang.reflect.Method;
+
+/**
+ * Votes for a lower display frame rate while a view draws. Uses
+ * {@code View.setRequestedFrameRate}, added in API 35, looked up reflectively as this library
+ * compiles against an older SDK. Does nothing on older versions.
+ * <p>
+ * The vote only applies to frames the view draws in. Other views that animate at the same time,
+ * e.g. a scrolling list, vote for themselves and the display runs at the highest rate asked for.
+ * </p>
+ */
+class FrameRateVote {
+
+    /**
+     * Rate voted for, in frames per second.
+     */
+    static final float LOW_FRAME_RATE = 30f;
+
+    private static final int API_VANILLA_ICE_CREAM = 35;
+
+    private static boolean isResolved;
+    private static Method setRequestedFrameRate;
+    private static float defaultFrameRate;
+
+    private final View view;
+    private boolean isLow;
+
+    FrameRateVote(View view) {
+        this.view = view;
+    }
+
+    /**
+     * @param low whether to vote for {@link #LOW_FRAME_RATE} rather than leave the rate to the
+     *            system
+     */
+    void setLow(boolean low) {
+        if (low == isLow) {
+            return;
+        }
+        isLow = low;
+        if (!resolve()) {
+            return;
+        }
+        try {
+            setRequestedFrameRate.invoke(view, low ? LOW_FRAME_RATE : defaultFrameRate);
+        } catch (Exception ignored) {
+            // A missed vote costs battery, not correctness
+        }
+    }
+
+    private static boolean resolve() {
+        if (!isResolved) {
+            isResolved = true;
+            if (Build.VERSION.SDK_INT >= API_VANILLA_ICE_CREAM) {
+                try {
+                    defaultFrameRate = View.class
+                            .getField("REQUESTED_FRAME_RATE_CATEGORY_DEFAULT").getFloat(null);
+                    setRequestedFrameRate =
+                            View.class.getMethod("setRequestedFrameRate", float.class);
+                } catch (Exception ignored) {
+                    setRequestedFrameRate = null;
+                }
+            }
+        }
+        return setRequestedFrameRate != null;
+    }
+}
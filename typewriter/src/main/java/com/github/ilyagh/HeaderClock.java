@@ -0,0 +1,130 @@
+package com.github.ilyagh;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * The only frame clock of the refresh header. Every phase of the header, the offset motion of
+ * the layout as well as the typewriter animation, is advanced from a single
+ * {@link Choreographer} callback per frame.
+ * <p>
+ * The clock does not count the time it spends paused, so everything driven by it continues in
+ * the same visual state after {@link #resume()}.
+ * </p>
+ */
+class HeaderClock implements Choreographer.FrameCallback {
+
+    /**
+     * Returned by {@link Client#onFrame(long)} when no further frame is needed.
+     */
+    static final long NO_FRAME = Long.MAX_VALUE;
+
+    interface Client {
+        /**
+         * Advance everything to the given time.
+         *
+         * @param time clock time of the frame in milliseconds
+         * @return clock time at which the next frame is needed, {@code time} itself for the very
+         * next frame or {@link #NO_FRAME}
+         */
+        long onFrame(long time);
+    }
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Client client;
+
+    private long pendingTime = NO_FRAME;
+    private boolean isPaused;
+    private long pauseStart;
+    private long pausedDuration;
+    private long frameLateness;
+
+    HeaderClock(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * @return current clock time in milliseconds
+     */
+    long now() {
+        return (isPaused ? pauseStart : SystemClock.uptimeMillis()) - pausedDuration;
+    }
+
+    /**
+     * @return how long after the time it was asked for the last frame came, in milliseconds.
+     * More than a frame interval means the UI thread missed a frame deadline.
+     */
+    long getFrameLateness() {
+        return frameLateness;
+    }
+
+    /**
+     * Ask for a frame on the next vsync.
+     */
+    void requestFrame() {
+        requestFrame(now());
+    }
+
+    /**
+     * Ask for a frame at the given clock time. An earlier request wins over a later one.
+     */
+    void requestFrame(long time) {
+        if (time >= pendingTime) {
+            return;
+        }
+        pendingTime = time;
+        post();
+    }
+
+    /**
+     * Stop asking for frames and freeze the clock.
+     */
+    void pause() {
+        if (isPaused) {
+            return;
+        }
+        isPaused = true;
+        pauseStart = SystemClock.uptimeMillis();
+        choreographer.removeFrameCallback(this);
+    }
+
+    void resume() {
+        if (!isPaused) {
+            return;
+        }
+        isPaused = false;
+        pausedDuration += SystemClock.uptimeMillis() - pauseStart;
+        if (pendingTime != NO_FRAME) {
+            post();
+        }
+    }
+
+    private void post() {
+        if (isPaused) {
+            return;
+        }
+        choreographer.removeFrameCallback(this);
+        final long delay = pendingTime - now();
+        if (delay > 0) {
+            choreographer.postFrameCallbackDelayed(this, delay);
+        } else {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (isPaused) {
+            return;
+        }
+        // The vsync time may be a little before the time the frame was asked for
+        final long vsyncTime = frameTimeNanos / 1000000L - pausedDuration;
+        frameLateness = Math.max(0L, vsyncTime - pendingTime);
+        final long time = Math.max(vsyncTime, pendingTime);
+        pendingTime = NO_FRAME;
+        final long next = client.onFrame(time);
+        if (next != NO_FRAME) {
+            requestFrame(next);
+        }
+    }
+}
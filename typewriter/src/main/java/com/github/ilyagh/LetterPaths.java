@@ -0,0 +1,83 @@
+package com.github.ilyagh;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * Letters typed on every line of the page, batched into one path per line. A line's path is
+ * rebuilt only when a key has been typed on it, so drawing the page costs one draw call per
+ * line however many letters it holds.
+ */
+class LetterPaths {
+
+    private final Path[] paths;
+    private final int[] revisions;
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF letter = new RectF();
+
+    private final int letterWidth;
+    private final int letterHeight;
+    private final float cornerRadius;
+
+    /**
+     * @param lines        number of lines on a page
+     * @param color        color of the letters
+     * @param letterWidth  width of a letter in pixels
+     * @param letterHeight height of a letter in pixels
+     * @param cornerRadius corner radius of a letter in pixels
+     */
+    LetterPaths(int lines, int color, int letterWidth, int letterHeight, float cornerRadius) {
+        paths = new Path[lines];
+        revisions = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            paths[i] = new Path();
+            // Never matches the revision of a line, so every path is built on first use
+            revisions[i] = -1;
+        }
+        paint.setColor(color);
+        this.letterWidth = letterWidth;
+        this.letterHeight = letterHeight;
+        this.cornerRadius = cornerRadius;
+    }
+
+    /**
+     * Draw the letters of a line.
+     *
+     * @param letters      letters typed on the page
+     * @param line         line to draw
+     * @param translationX translation of the first letter, as passed to the layout of the
+     *                     letter drawable but without the carriage position
+     * @param x            horizontal position the line is drawn at
+     * @param y            top of the line
+     */
+    void draw(Canvas canvas, TypedLetters letters, int line, int translationX, float x,
+            float y) {
+        final Path path = paths[line];
+        if (revisions[line] != letters.getRevision(line)) {
+            revisions[line] = letters.getRevision(line);
+            build(path, letters, line, translationX);
+        }
+        if (path.isEmpty()) {
+            return;
+        }
+
+        final int saveCount = canvas.save();
+        canvas.translate(x, y);
+        canvas.drawPath(path, paint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private void build(Path path, TypedLetters letters, int line, int translationX) {
+        path.reset();
+        final int offsetCount = letters.getOffsetCount(line);
+        for (int i = 0; i < letters.getLetterCount(line) - 1; i++) {
+            translationX -= offsetCount <= i ? 0 : letters.getOffset(line, i);
+            // Letters are centered like any other drawable, OX goes (+inf; -inf)
+            final int left = -(letterWidth + translationX) / 2;
+            letter.set(left, 0, left + letterWidth, letterHeight);
+            path.addRoundRect(letter, cornerRadius, cornerRadius, Path.Direction.CW);
+        }
+    }
+}
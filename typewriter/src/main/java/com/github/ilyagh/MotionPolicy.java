@@ -0,0 +1,116 @@
+package com.github.ilyagh;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.Settings;
+
+/**
+ * Follows the system settings that ask apps to animate less: battery saver and the animator
+ * duration scale, which "Remove animations" in the accessibility settings sets to 0. Tells the
+ * layout the lowest quality level the refresh animation may be drawn at, and calls back on the
+ * UI thread when that changes.
+ */
+class MotionPolicy {
+
+    interface Listener {
+        void onMotionPolicyChanged();
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final ContentObserver animatorScaleObserver;
+    private final BroadcastReceiver powerSaveReceiver;
+
+    private boolean isRegistered;
+    private int minQuality = TypewriterRefreshLayout.QUALITY_FULL;
+
+    MotionPolicy(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        animatorScaleObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                update();
+            }
+        };
+        powerSaveReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                update();
+            }
+        };
+    }
+
+    /**
+     * Read the settings and follow their changes until {@link #unregister()}.
+     */
+    void register() {
+        if (isRegistered) {
+            return;
+        }
+        isRegistered = true;
+        context.getContentResolver().registerContentObserver(
+                Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE), false,
+                animatorScaleObserver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            context.registerReceiver(powerSaveReceiver,
+                    new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        }
+        update();
+    }
+
+    /**
+     * Stop following the settings. The last level read is kept.
+     */
+    void unregister() {
+        if (!isRegistered) {
+            return;
+        }
+        isRegistered = false;
+        context.getContentResolver().unregisterContentObserver(animatorScaleObserver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            context.unregisterReceiver(powerSaveReceiver);
+        }
+    }
+
+    /**
+     * @return {@link TypewriterRefreshLayout#QUALITY_STATIC} while animations are off,
+     * {@link TypewriterRefreshLayout#QUALITY_HALF_STEP_RATE}, which only moves the carriage,
+     * while battery saver is on, {@link TypewriterRefreshLayout#QUALITY_FULL} otherwise
+     */
+    int getMinQuality() {
+        return minQuality;
+    }
+
+    private void update() {
+        final int minQuality;
+        if (Settings.Global.getFloat(context.getContentResolver(),
+                Settings.Global.ANIMATOR_DURATION_SCALE, 1f) == 0f) {
+            minQuality = TypewriterRefreshLayout.QUALITY_STATIC;
+        } else if (isPowerSaveMode()) {
+            minQuality = TypewriterRefreshLayout.QUALITY_HALF_STEP_RATE;
+        } else {
+            minQuality = TypewriterRefreshLayout.QUALITY_FULL;
+        }
+        if (minQuality != this.minQuality) {
+            this.minQuality = minQuality;
+            listener.onMotionPolicyChanged();
+        }
+    }
+
+    private boolean isPowerSaveMode() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        final PowerManager powerManager =
+                (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && powerManager.isPowerSaveMode();
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.ilyagh;
+
+/**
+ * Timing of the refresh header collected over one pull or refresh, from the moment the header
+ * starts moving until it is hidden again. See
+ * {@link TypewriterRefreshLayout#setOnFrameMetricsListener(TypewriterRefreshLayout.OnFrameMetricsListener)}.
+ * <p>
+ * All values are kept in fixed-size primitive buckets, so recording never allocates. The
+ * instance passed to the listener is reused for the next pull: copy what you need before
+ * returning from the callback.
+ * </p>
+ */
+public final class RefreshFrameMetrics {
+
+    /**
+     * Upper bounds of the draw time histogram buckets. The last bucket has no upper bound.
+     */
+    private static final long[] BUCKET_UPPER_BOUNDS_NANOS = {
+            50000L, 100000L, 250000L, 500000L, 1000000L,
+            2000000L, 4000000L, 8000000L, 16000000L, Long.MAX_VALUE
+    };
+
+    private static final long DEFAULT_FRAME_BUDGET_NANOS = 16666667L;
+    private static final long NONE = -1L;
+
+    private final int[] drawTimeHistogram = new int[BUCKET_UPPER_BOUNDS_NANOS.length];
+    private long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+
+    private int frameCount;
+    private int invalidationCount;
+    private int slowDragFrameCount;
+    private int slowRefreshFrameCount;
+    private long totalDrawTimeNanos;
+    private long maxDrawTimeNanos;
+
+    private long pendingInvalidationNanos = NONE;
+    private long refreshTriggerNanos = NONE;
+    private long timeToFirstRefreshFrameNanos = NONE;
+
+    RefreshFrameMetrics() {
+    }
+
+    /**
+     * @return number of buckets in the draw time histogram
+     */
+    public int getBucketCount() {
+        return drawTimeHistogram.length;
+    }
+
+    /**
+     * @param bucket index of the bucket
+     * @return exclusive upper bound of the bucket in nanoseconds, {@link Long#MAX_VALUE} for the
+     * last one
+     */
+    public long getBucketUpperBoundNanos(int bucket) {
+        return BUCKET_UPPER_BOUNDS_NANOS[bucket];
+    }
+
+    /**
+     * @param bucket index of the bucket
+     * @return number of frames whose draw time falls into the bucket
+     */
+    public int getDrawCount(int bucket) {
+        return drawTimeHistogram[bucket];
+    }
+
+    /**
+     * @return number of frames the header has drawn
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return number of times the header asked to be redrawn
+     */
+    public int getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /**
+     * @return number of frames drawn more than one frame budget after they were requested
+     * while the header was being dragged
+     */
+    public int getSlowDragFrameCount() {
+        return slowDragFrameCount;
+    }
+
+    /**
+     * @return number of frames drawn more than one frame budget after they were requested
+     * while the header was refreshing
+     */
+    public int getSlowRefreshFrameCount() {
+        return slowRefreshFrameCount;
+    }
+
+    public long getTotalDrawTimeNanos() {
+        return totalDrawTimeNanos;
+    }
+
+    public long getMaxDrawTimeNanos() {
+        return maxDrawTimeNanos;
+    }
+
+    /**
+     * @return time from the refresh being triggered to the first frame of the refresh
+     * animation, or -1 if the header was not refreshing
+     */
+    public long getTimeToFirstRefreshFrameNanos() {
+        return timeToFirstRefreshFrameNanos;
+    }
+
+    public long getFrameBudgetNanos() {
+        return frameBudgetNanos;
+    }
+
+    void setFrameBudgetNanos(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    void recordInvalidation(long nowNanos) {
+        invalidationCount++;
+        if (pendingInvalidationNanos == NONE) {
+            pendingInvalidationNanos = nowNanos;
+        }
+    }
+
+    void recordRefreshTrigger(long nowNanos) {
+        refreshTriggerNanos = nowNanos;
+    }
+
+    /**
+     * @param startNanos    time the draw started at
+     * @param durationNanos time the draw took
+     * @param isRefreshing  whether the refresh animation is running, as opposed to a drag
+     */
+    void recordFrame(long startNanos, long durationNanos, boolean isRefreshing) {
+        frameCount++;
+        totalDrawTimeNanos += durationNanos;
+        if (durationNanos > maxDrawTimeNanos) {
+            maxDrawTimeNanos = durationNanos;
+        }
+        int bucket = 0;
+        while (durationNanos >= BUCKET_UPPER_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        drawTimeHistogram[bucket]++;
+
+        if (pendingInvalidationNanos != NONE
+                && startNanos - pendingInvalidationNanos > frameBudgetNanos) {
+            if (isRefreshing) {
+                slowRefreshFrameCount++;
+            } else {
+                slowDragFrameCount++;
+            }
+        }
+        pendingInvalidationNanos = NONE;
+
+        if (isRefreshing && refreshTriggerNanos != NONE) {
+            timeToFirstRefreshFrameNanos = startNanos - refreshTriggerNanos;
+            refreshTriggerNanos = NONE;
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < drawTimeHistogram.length; i++) {
+            drawTimeHistogram[i] = 0;
+        }
+        frameCount = 0;
+        invalidationCount = 0;
+        slowDragFrameCount = 0;
+        slowRefreshFrameCount = 0;
+        totalDrawTimeNanos = 0;
+        maxDrawTimeNanos = 0;
+        pendingInvalidationNanos = NONE;
+        refreshTriggerNanos = NONE;
+        timeToFirstRefreshFrameNanos = NONE;
+    }
+}
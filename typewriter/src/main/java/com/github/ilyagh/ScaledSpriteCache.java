@@ -0,0 +1,102 @@
+package com.github.ilyagh;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Drawables pre-rendered at a few fixed scales. While the header is dragged it is drawn at a
+ * slightly different scale on every frame, which would rasterise vector content anew every
+ * time. Instead the nearest larger cached scale is drawn and the canvas scales the bitmap down.
+ * <p>
+ * Sprites are rendered the first time they are needed, or ahead of time with
+ * {@link #prepare(int, Drawable)}.
+ * </p>
+ */
+class ScaledSpriteCache {
+
+    private static final float[] LEVELS = {0.25f, 0.5f, 0.75f, 1f};
+
+    private final Bitmap[][] sprites;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect savedBounds = new Rect();
+
+    /**
+     * @param spriteCount number of sprite ids
+     */
+    ScaledSpriteCache(int spriteCount) {
+        sprites = new Bitmap[spriteCount][LEVELS.length];
+    }
+
+    /**
+     * Draw a sprite in place of the drawable.
+     *
+     * @param canvas   canvas already scaled by {@code scale}
+     * @param sprite   id of the sprite
+     * @param drawable drawable the sprite is rendered from, laid out where it has to be drawn
+     * @param scale    scale the canvas draws at
+     * @return false if the scale is above every cached level and the drawable has to be drawn
+     * itself
+     */
+    boolean draw(Canvas canvas, int sprite, Drawable drawable, float scale) {
+        final int level = getLevel(scale);
+        if (level < 0) {
+            return false;
+        }
+        Bitmap bitmap = sprites[sprite][level];
+        if (bitmap == null) {
+            bitmap = render(drawable, LEVELS[level]);
+            sprites[sprite][level] = bitmap;
+        }
+        canvas.drawBitmap(bitmap, null, drawable.getBounds(), paint);
+        return true;
+    }
+
+    /**
+     * Render every level of a sprite that is not cached yet.
+     */
+    void prepare(int sprite, Drawable drawable) {
+        for (int level = 0; level < LEVELS.length; level++) {
+            if (sprites[sprite][level] == null) {
+                sprites[sprite][level] = render(drawable, LEVELS[level]);
+            }
+        }
+    }
+
+    void release() {
+        for (Bitmap[] levels : sprites) {
+            for (int level = 0; level < levels.length; level++) {
+                if (levels[level] != null) {
+                    levels[level].recycle();
+                    levels[level] = null;
+                }
+            }
+        }
+    }
+
+    private Bitmap render(Drawable drawable, float level) {
+        final int width = drawable.getIntrinsicWidth();
+        final int height = drawable.getIntrinsicHeight();
+        final Bitmap bitmap = Bitmap.createBitmap(Math.max(1, (int) Math.ceil(width * level)),
+                Math.max(1, (int) Math.ceil(height * level)), Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.scale(level, level);
+
+        savedBounds.set(drawable.getBounds());
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(canvas);
+        drawable.setBounds(savedBounds);
+        return bitmap;
+    }
+
+    private static int getLevel(float scale) {
+        for (int level = 0; level < LEVELS.length; level++) {
+            if (scale <= LEVELS[level]) {
+                return level;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,17 +0,0 @@
-package com.github.ilyagh;
-
-import android.view.animation.Animation;
-
-class SimpleAnimationListener implements Animation.AnimationListener {
-    @Override
-    public void onAnimationStart(Animation animation) {
-    }
-
-    @Override
-    public void onAnimationEnd(Animation animation) {
-    }
-
-    @Override
-    public void onAnimationRepeat(Animation animation) {
-    }
-}
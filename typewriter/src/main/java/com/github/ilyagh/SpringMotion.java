@@ -0,0 +1,143 @@
+package com.github.ilyagh;
+
+/**
+ * Damped spring moving a single value towards a target. Every update solves the spring
+ * analytically from the current value and velocity, so frames of any length give the same
+ * motion, and the target can be changed mid-flight without losing the velocity.
+ * <p>
+ * State is kept in primitive fields: starting, retargeting and updating never allocate.
+ * </p>
+ */
+class SpringMotion {
+
+    static final float STIFFNESS_LOW = 200f;
+    static final float DAMPING_RATIO_NO_BOUNCY = 1f;
+
+    /**
+     * The spring is at rest once it is this close to the target, in pixels...
+     */
+    private static final double REST_DISTANCE = 0.5;
+    /**
+     * ...and moves slower than this, in pixels per second.
+     */
+    private static final double REST_VELOCITY = 10.0;
+
+    private final double naturalFrequency;
+    private final double dampingRatio;
+
+    private double value;
+    private double velocity;
+    private double target;
+    private long lastTime;
+    private boolean isRunning;
+
+    /**
+     * @param stiffness    stiffness of the spring, {@link #STIFFNESS_LOW} settles in about 0.6s
+     * @param dampingRatio 1 for no overshoot, below 1 to bounce, above 1 to settle slower
+     */
+    SpringMotion(float stiffness, float dampingRatio) {
+        this.naturalFrequency = Math.sqrt(stiffness);
+        this.dampingRatio = dampingRatio;
+    }
+
+    /**
+     * @param value    value to start from
+     * @param velocity velocity to start with, in units per second
+     * @param target   value to settle at
+     * @param time     time of the start in milliseconds
+     */
+    void start(float value, float velocity, float target, long time) {
+        this.value = value;
+        this.velocity = velocity;
+        this.target = target;
+        this.lastTime = time;
+        isRunning = true;
+    }
+
+    /**
+     * Settle at another value, continuing from the current value and velocity.
+     */
+    void setTarget(float target) {
+        this.target = target;
+    }
+
+    void cancel() {
+        isRunning = false;
+        velocity = 0;
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    float getValue() {
+        return (float) value;
+    }
+
+    /**
+     * @return velocity in units per second
+     */
+    float getVelocity() {
+        return (float) velocity;
+    }
+
+    float getTarget() {
+        return (float) target;
+    }
+
+    /**
+     * Move the spring to the given time. Time must not go backwards.
+     *
+     * @param time time in milliseconds
+     * @return whether the spring is still moving
+     */
+    boolean update(long time) {
+        if (!isRunning) {
+            return false;
+        }
+        final double t = (time - lastTime) / 1000.0;
+        lastTime = time;
+
+        final double x0 = value - target;
+        final double v0 = velocity;
+        final double w = naturalFrequency;
+        final double zeta = dampingRatio;
+        double x;
+        double v;
+        if (zeta == 1.0) {
+            final double decay = Math.exp(-w * t);
+            final double b = v0 + w * x0;
+            x = (x0 + b * t) * decay;
+            v = (b - w * (x0 + b * t)) * decay;
+        } else if (zeta < 1.0) {
+            final double dampedFrequency = w * Math.sqrt(1.0 - zeta * zeta);
+            final double decay = Math.exp(-zeta * w * t);
+            final double cos = Math.cos(dampedFrequency * t);
+            final double sin = Math.sin(dampedFrequency * t);
+            final double b = (zeta * w * x0 + v0) / dampedFrequency;
+            x = decay * (x0 * cos + b * sin);
+            v = decay * ((b * dampedFrequency - zeta * w * x0) * cos
+                    - (x0 * dampedFrequency + zeta * w * b) * sin);
+        } else {
+            final double root = w * Math.sqrt(zeta * zeta - 1.0);
+            final double r1 = -zeta * w + root;
+            final double r2 = -zeta * w - root;
+            final double c1 = (v0 - r2 * x0) / (r1 - r2);
+            final double c2 = x0 - c1;
+            final double e1 = Math.exp(r1 * t);
+            final double e2 = Math.exp(r2 * t);
+            x = c1 * e1 + c2 * e2;
+            v = c1 * r1 * e1 + c2 * r2 * e2;
+        }
+
+        if (Math.abs(x) < REST_DISTANCE && Math.abs(v) < REST_VELOCITY) {
+            value = target;
+            velocity = 0;
+            isRunning = false;
+            return false;
+        }
+        value = target + x;
+        velocity = v;
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.ilyagh;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import java.util.Arrays;
+
+/**
+ * The refresh animation of one seed and size baked into atlas bitmaps, see
+ * {@link SpriteSheetBaker}. Every distinct frame of the animation, from the start up to the end
+ * of the first repetition of the loop, is one cell of an atlas page.
+ */
+class SpriteSheet {
+
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final Rect bounds;
+    private final long[] frameTimes;
+    private final Bitmap[] pages;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int columns;
+    private final int framesPerPage;
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect source = new Rect();
+
+    /**
+     * @param seed       seed the frames were rendered with
+     * @param width      width of a frame in layout pixels
+     * @param height     height of a frame in layout pixels
+     * @param bounds     part of the frame the cells hold, in layout coordinates
+     * @param frameTimes times since the start of the animation each frame is shown from
+     * @param pages      atlas pages, filled row by row
+     * @param cellWidth  width of a frame in the atlas
+     * @param cellHeight height of a frame in the atlas
+     */
+    SpriteSheet(long seed, int width, int height, Rect bounds, long[] frameTimes,
+            Bitmap[] pages, int cellWidth, int cellHeight) {
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.bounds = bounds;
+        this.frameTimes = frameTimes;
+        this.pages = pages;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.columns = pages[0].getWidth() / cellWidth;
+        this.framesPerPage = columns * (pages[0].getHeight() / cellHeight);
+    }
+
+    boolean isValid(long seed, int width, int height) {
+        return this.seed == seed && this.width == width && this.height == height;
+    }
+
+    /**
+     * @param elapsed time since the start of the animation in milliseconds
+     * @return index of the frame shown at that time
+     */
+    int getFrame(long elapsed) {
+        final int index = Arrays.binarySearch(frameTimes, toSheetTime(elapsed));
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * @param elapsed time since the start of the animation in milliseconds
+     * @return time since the start of the animation the next frame is shown at
+     */
+    long getNextFrameTime(long elapsed) {
+        final long sheetTime = toSheetTime(elapsed);
+        final int frame = getFrame(elapsed);
+        final long next = frame + 1 < frameTimes.length ? frameTimes[frame + 1]
+                : TypewriterAnimationModel.LOOP_START_MS + TypewriterAnimationModel.LOOP_PERIOD_MS;
+        return elapsed + next - sheetTime;
+    }
+
+    /**
+     * Draw a frame in layout coordinates.
+     *
+     * @param frame index of the frame
+     */
+    void draw(Canvas canvas, int frame) {
+        final int cell = frame % framesPerPage;
+        final int left = cell % columns * cellWidth;
+        final int top = cell / columns * cellHeight;
+        source.set(left, top, left + cellWidth, top + cellHeight);
+        canvas.drawBitmap(pages[frame / framesPerPage], source, bounds, paint);
+    }
+
+    void release() {
+        for (Bitmap page : pages) {
+            page.recycle();
+        }
+    }
+
+    /**
+     * Map a time past the baked frames back into the loop.
+     */
+    private static long toSheetTime(long elapsed) {
+        final long end = TypewriterAnimationModel.LOOP_START_MS
+                + TypewriterAnimationModel.LOOP_PERIOD_MS;
+        if (elapsed < end) {
+            return elapsed;
+        }
+        return TypewriterAnimationModel.LOOP_START_MS
+                + (elapsed - TypewriterAnimationModel.LOOP_START_MS)
+                % TypewriterAnimationModel.LOOP_PERIOD_MS;
+    }
+}
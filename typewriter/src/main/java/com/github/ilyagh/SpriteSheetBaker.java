@@ -0,0 +1,199 @@
+package com.github.ilyagh;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bakes the refresh animation into a {@link SpriteSheet} in the background. Atlas pages are
+ * rendered in parallel, each one by a worker with its own unshared drawables.
+ */
+class SpriteSheetBaker {
+
+    interface Callback {
+        /**
+         * Called on the UI thread.
+         *
+         * @param sheet baked sheet, or null if baking failed
+         */
+        void onBaked(SpriteSheet sheet);
+    }
+
+    /**
+     * Continuous phases, the page feed and the carriage return, are sampled at this interval.
+     */
+    private static final long SAMPLE_INTERVAL_MS = 1000 / 30;
+    private static final int MAX_PAGE_SIZE = 2048;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private SpriteSheetBaker() {
+    }
+
+    /**
+     * @param layout       layout the frames are rendered for
+     * @param drawable     drawable whose seed and size are baked
+     * @param height       height of a frame in layout pixels
+     * @param memoryBudget maximum size of all atlas pages in bytes, frames are cropped to
+     *                     the content bounds of the drawable and rendered at a lower resolution
+     *                     to fit
+     * @param callback     receives the sheet
+     */
+    static void bake(final TypewriterRefreshLayout layout, TypewriterRefreshDrawable drawable,
+            final int height, final long memoryBudget, final Callback callback) {
+        final long seed = drawable.getSeed();
+        final int width = drawable.getScreenWidth();
+        final int carriageOffset = drawable.getCarriageOffset();
+        final Rect bounds = new Rect();
+        drawable.getContentBounds(bounds);
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final SpriteSheet sheet =
+                        bake(layout, seed, width, height, bounds, carriageOffset, memoryBudget);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onBaked(sheet);
+                    }
+                });
+            }
+        }, "TypewriterSpriteSheet").start();
+    }
+
+    private static SpriteSheet bake(final TypewriterRefreshLayout layout, final long seed,
+            final int width, int height, final Rect bounds, int carriageOffset,
+            long memoryBudget) {
+        final long[] frameTimes = getFrameTimes(seed, carriageOffset);
+        final int frameCount = frameTimes.length;
+
+        // Only the typewriter is baked, not the empty sides of the header
+        final int boundsWidth = Math.max(1, bounds.width());
+        final int boundsHeight = Math.max(1, bounds.height());
+        final double scale = Math.min(1.0, Math.sqrt(memoryBudget
+                / ((double) frameCount * boundsWidth * boundsHeight * BYTES_PER_PIXEL)));
+        final int cellWidth = Math.max(1, (int) (boundsWidth * scale));
+        final int cellHeight = Math.max(1, (int) (boundsHeight * scale));
+        final int columns = Math.max(1, MAX_PAGE_SIZE / cellWidth);
+        final int framesPerPage = columns * Math.max(1, MAX_PAGE_SIZE / cellHeight);
+        final int pageCount = (frameCount + framesPerPage - 1) / framesPerPage;
+        final int rows = (Math.min(frameCount, framesPerPage) + columns - 1) / columns;
+
+        final int pageWidth = columns * cellWidth;
+        final int pageHeight = rows * cellHeight;
+        // Filled by the workers, read once they are all done
+        final Bitmap[] pages = new Bitmap[pageCount];
+        final List<Callable<Void>> tasks = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            final int pageIndex = i;
+            final int firstFrame = i * framesPerPage;
+            final int lastFrame = Math.min(frameCount, firstFrame + framesPerPage);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    // Allocated here so that running out of memory fails the task, not the app
+                    final Bitmap page =
+                            Bitmap.createBitmap(pageWidth, pageHeight, Bitmap.Config.ARGB_8888);
+                    pages[pageIndex] = page;
+                    final TypewriterDrawablePool.Entry entry =
+                            TypewriterDrawablePool.inflateUnshared(layout.getContext(), width);
+                    try {
+                        final TypewriterRefreshDrawable renderer =
+                                new TypewriterRefreshDrawable(layout);
+                        renderer.prepareOffscreen(entry, seed);
+                        final Canvas canvas = new Canvas(page);
+                        for (int frame = firstFrame; frame < lastFrame; frame++) {
+                            final int cell = frame - firstFrame;
+                            final int saveCount = canvas.save();
+                            canvas.translate(cell % columns * cellWidth,
+                                    cell / columns * cellHeight);
+                            canvas.clipRect(0, 0, cellWidth, cellHeight);
+                            canvas.scale(cellWidth / (float) boundsWidth,
+                                    cellHeight / (float) boundsHeight);
+                            canvas.translate(-bounds.left, -bounds.top);
+                            renderer.renderFrame(canvas, frameTimes[frame]);
+                            canvas.restoreToCount(saveCount);
+                        }
+                    } finally {
+                        TypewriterDrawablePool.releaseUnshared(entry);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        final int workers = Math.max(1,
+                Math.min(pageCount, Runtime.getRuntime().availableProcessors() - 1));
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (Exception e) {
+            recycle(pages);
+            return null;
+        } catch (OutOfMemoryError e) {
+            recycle(pages);
+            return null;
+        } finally {
+            executor.shutdown();
+        }
+        return new SpriteSheet(seed, width, height, bounds, frameTimes, pages, cellWidth,
+                cellHeight);
+    }
+
+    /**
+     * Recycle the pages allocated before baking failed.
+     */
+    private static void recycle(Bitmap[] pages) {
+        for (Bitmap page : pages) {
+            if (page != null) {
+                page.recycle();
+            }
+        }
+    }
+
+    /**
+     * @return times of every distinct frame from the start of the animation to the end of the
+     * first repetition of its loop
+     */
+    private static long[] getFrameTimes(long seed, int carriageOffset) {
+        final TypewriterAnimationModel model = new TypewriterAnimationModel(seed);
+        model.setCarriageOffset(carriageOffset);
+        model.start(false);
+
+        final long end = TypewriterAnimationModel.LOOP_START_MS
+                + TypewriterAnimationModel.LOOP_PERIOD_MS;
+        long[] times = new long[256];
+        int count = 0;
+        long time = 0;
+        while (time < end) {
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+            }
+            times[count++] = time;
+            model.update(time);
+            long next = model.getNextFrameTime(time);
+            if (next == TypewriterAnimationModel.NO_FRAME) {
+                break;
+            }
+            if (next <= time) {
+                next = time + SAMPLE_INTERVAL_MS;
+            }
+            time = next;
+        }
+        return Arrays.copyOf(times, count);
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.ilyagh;
+
+import android.graphics.Canvas;
+import android.support.annotation.Nullable;
+
+/**
+ * Refresh drawable that plays the refresh animation back from a baked {@link SpriteSheet}:
+ * every frame is a single bitmap draw. The sheet is baked in the background once the drawable
+ * is set up. Until it is ready, and for everything but the running refresh animation at full
+ * scale, the typewriter is drawn from its drawables as usual.
+ */
+class SpriteSheetRefreshDrawable extends TypewriterRefreshDrawable {
+
+    private static final long MEMORY_BUDGET_BYTES = 16L * 1024 * 1024;
+
+    private final TypewriterRefreshLayout parent;
+
+    @Nullable
+    private SpriteSheet sheet;
+    private boolean isBaking;
+    /**
+     * Whether baking {@link #bakingSeed} at {@link #bakingWidth} failed.
+     */
+    private boolean isBakeFailed;
+    private long bakingSeed;
+    private int bakingWidth;
+    /**
+     * Changes whenever a sheet being baked becomes useless.
+     */
+    private int bakeGeneration;
+    private boolean isPlayable;
+    private long elapsed;
+
+    SpriteSheetRefreshDrawable(TypewriterRefreshLayout layout) {
+        super(layout);
+        parent = layout;
+    }
+
+    @Override
+    protected void init() {
+        super.init();
+        bakeIfNeeded();
+    }
+
+    @Override
+    void setSeed(long seed) {
+        super.setSeed(seed);
+        bakeIfNeeded();
+    }
+
+    @Override
+    void release() {
+        super.release();
+        releaseSheet();
+        bakeGeneration++;
+        isBaking = false;
+        isBakeFailed = false;
+    }
+
+    @Override
+    public void start() {
+        // A still typewriter is a single frame, there is nothing to play back. A refresh started
+        // at the static level is played back once the model is started again at a higher one
+        isPlayable = !isSkipAnimation();
+        elapsed = 0;
+        super.start();
+    }
+
+    @Override
+    long onFrame(long time) {
+        final long next = super.onFrame(time);
+        if (next == HeaderClock.NO_FRAME) {
+            // The animation did not advance, keep showing the same frame
+            return next;
+        }
+        elapsed = time - getStartTime();
+        if (!isPlaying()) {
+            return next;
+        }
+        return getStartTime() + sheet.getNextFrameTime(elapsed);
+    }
+
+    @Override
+    void drawContent(Canvas canvas) {
+        if (isPlaying()) {
+            sheet.draw(canvas, sheet.getFrame(elapsed));
+        } else {
+            super.drawContent(canvas);
+        }
+    }
+
+    private boolean isPlaying() {
+        // The sheet holds the full animation, lower quality levels are drawn from the drawables
+        return sheet != null && isPlayable && isAnimationStarted() && getPercent() >= 1f
+                && getQuality() == TypewriterRefreshLayout.QUALITY_FULL
+                && sheet.isValid(getSeed(), getScreenWidth(), parent.getTotalDragDistance());
+    }
+
+    private void bakeIfNeeded() {
+        final int width = getScreenWidth();
+        final int height = parent.getTotalDragDistance();
+        if (width <= 0 || sheet != null && sheet.isValid(getSeed(), width, height)
+                || (isBaking || isBakeFailed) && bakingSeed == getSeed()
+                && bakingWidth == width) {
+            return;
+        }
+        releaseSheet();
+        final int generation = ++bakeGeneration;
+        isBaking = true;
+        isBakeFailed = false;
+        bakingSeed = getSeed();
+        bakingWidth = width;
+        SpriteSheetBaker.bake(parent, this, height, MEMORY_BUDGET_BYTES,
+                new SpriteSheetBaker.Callback() {
+                    @Override
+                    public void onBaked(SpriteSheet baked) {
+                        if (generation != bakeGeneration) {
+                            if (baked != null) {
+                                baked.release();
+                            }
+                            return;
+                        }
+                        isBaking = false;
+                        if (baked == null) {
+                            // Keep drawing the drawables, and only bake again for another seed
+                            // or size as this one would fail again
+                            isBakeFailed = true;
+                            return;
+                        }
+                        sheet = baked;
+                    }
+                });
+    }
+
+    private void releaseSheet() {
+        if (sheet != null) {
+            sheet.release();
+            sheet = null;
+        }
+    }
+}
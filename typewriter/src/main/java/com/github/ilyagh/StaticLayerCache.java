@@ -0,0 +1,111 @@
+package com.github.ilyagh;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.support.annotation.Nullable;
+
+/**
+ * Pre-rendered static part of the typewriter: the body, the keyboard and all unpressed keys.
+ * The layer is built once per width and density and blitted on every frame instead of
+ * drawing every drawable it contains.
+ */
+class StaticLayerCache {
+
+    interface Painter {
+        /**
+         * Paint the static content into the given canvas using layout coordinates.
+         *
+         * @param canvas   canvas already translated to the layer origin
+         * @param withKeys whether unpressed keys should be painted on top of the keyboard
+         */
+        void paint(Canvas canvas, boolean withKeys);
+    }
+
+    private final Rect bounds = new Rect();
+    private final Rect source = new Rect();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * Body, keyboard and unpressed keys.
+     */
+    private Bitmap layer;
+    /**
+     * Body and keyboard only, used to fill the hole left by the pressed key.
+     */
+    private Bitmap base;
+
+    private int width;
+    private float density;
+
+    boolean isValid(int width, float density) {
+        return layer != null && this.width == width && this.density == density;
+    }
+
+    /**
+     * @param width   width of the view the layer is built for
+     * @param density display density the layer is built for
+     * @param bounds  union of the bounds of all static drawables in layout coordinates
+     * @param painter paints the static content
+     */
+    void build(int width, float density, Rect bounds, Painter painter) {
+        release();
+        if (bounds.isEmpty()) {
+            return;
+        }
+        this.bounds.set(bounds);
+        this.width = width;
+        this.density = density;
+        layer = render(painter, true);
+        base = render(painter, false);
+    }
+
+    private Bitmap render(Painter painter, boolean withKeys) {
+        Bitmap bitmap = Bitmap.createBitmap(bounds.width(), bounds.height(),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.translate(-bounds.left, -bounds.top);
+        painter.paint(canvas, withKeys);
+        return bitmap;
+    }
+
+    /**
+     * Draw the layer.
+     *
+     * @param canvas canvas in layout coordinates
+     * @param hole   bounds of the pressed key, which is drawn without its unpressed key below
+     */
+    void draw(Canvas canvas, @Nullable Rect hole) {
+        if (layer == null) {
+            return;
+        }
+        if (hole == null) {
+            canvas.drawBitmap(layer, bounds.left, bounds.top, paint);
+            return;
+        }
+
+        final int saveCount = canvas.save();
+        canvas.clipRect(hole, Region.Op.DIFFERENCE);
+        canvas.drawBitmap(layer, bounds.left, bounds.top, paint);
+        canvas.restoreToCount(saveCount);
+
+        source.set(hole);
+        source.offset(-bounds.left, -bounds.top);
+        canvas.drawBitmap(base, source, hole, paint);
+    }
+
+    void release() {
+        if (layer != null) {
+            layer.recycle();
+            layer = null;
+        }
+        if (base != null) {
+            base.recycle();
+            base = null;
+        }
+        width = 0;
+        density = 0f;
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.ilyagh;
+
+/**
+ * Fixed-capacity store of the letters typed on every line of the page. Each line keeps the
+ * carriage motion of its key presses in a primitive ring, so neither typing nor drawing
+ * allocates or boxes.
+ */
+class TypedLetters {
+
+    private final int lines;
+    private final int capacity;
+    /**
+     * Carriage motion of every key press, {@code capacity} slots per line.
+     */
+    private final int[] offsets;
+    private final int[] heads;
+    private final int[] sizes;
+    private final int[] letters;
+    private final int[] revisions;
+
+    /**
+     * @param lines    number of lines on a page
+     * @param capacity max number of key presses remembered per line
+     */
+    TypedLetters(int lines, int capacity) {
+        this.lines = lines;
+        this.capacity = capacity;
+        offsets = new int[lines * capacity];
+        heads = new int[lines];
+        sizes = new int[lines];
+        letters = new int[lines];
+        revisions = new int[lines];
+    }
+
+    /**
+     * Remember the carriage motion of a key press. When the line is full the oldest motion is
+     * overwritten.
+     */
+    void addOffset(int line, int offset) {
+        final int size = sizes[line];
+        if (size < capacity) {
+            offsets[line * capacity + (heads[line] + size) % capacity] = offset;
+            sizes[line] = size + 1;
+        } else {
+            offsets[line * capacity + heads[line]] = offset;
+            heads[line] = (heads[line] + 1) % capacity;
+        }
+        revisions[line]++;
+    }
+
+    int getOffsetCount(int line) {
+        return sizes[line];
+    }
+
+    /**
+     * @param index index of the key press on the line, the oldest one being 0
+     * @return carriage motion of the key press
+     */
+    int getOffset(int line, int index) {
+        return offsets[line * capacity + (heads[line] + index) % capacity];
+    }
+
+    void addLetter(int line) {
+        letters[line]++;
+        revisions[line]++;
+    }
+
+    void removeLetter(int line) {
+        letters[line]--;
+        revisions[line]++;
+    }
+
+    int getLetterCount(int line) {
+        return letters[line];
+    }
+
+    /**
+     * @return number that changes whenever the line changes
+     */
+    int getRevision(int line) {
+        return revisions[line];
+    }
+
+    void clear() {
+        for (int i = 0; i < lines; i++) {
+            heads[i] = 0;
+            sizes[i] = 0;
+            letters[i] = 0;
+            revisions[i]++;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.github.ilyagh;
+
+/**
+ * State machine of the typewriter refresh animation. It has no Android dependencies: given the
+ * time elapsed since {@link #start(boolean)} it describes what the typewriter looks like in a
+ * {@link TypewriterFrame}.
+ * <p>
+ * The animation feeds the page in, returns the carriage and then types {@link #PAGE_CYCLE}
+ * lines over and over again. Every carriage step crossed since the previous update types a key,
+ * so the number of typed keys does not depend on the frame rate. Which keys are typed is looked
+ * up in a {@link TypewriterTimeline} generated from a seed, so the same seed always produces
+ * the same frames.
+ * </p>
+ */
+class TypewriterAnimationModel {
+
+    static final int EMPTY_KEY = -1;
+    static final int SPACE_KEY = -2;
+
+    static final int PAGE_CYCLE = 3;
+    static final int FIRST_STEP = 1;
+    static final int LAST_STEP = 17;
+
+    /**
+     * Returned by {@link #getNextFrameTime(long)} when nothing is going to change.
+     */
+    static final long NO_FRAME = Long.MAX_VALUE;
+
+    private static final int PAGE_ANIMATION_DURATION_MS = 500;
+    private static final int CARRIAGE_ANIMATION_DURATION_MS = 2000;
+    private static final int CARRIAGE_ANIMATION_RETURN_DURATION_MS = 500;
+    private static final int INTRO_DURATION_MS =
+            PAGE_ANIMATION_DURATION_MS + CARRIAGE_ANIMATION_RETURN_DURATION_MS;
+    private static final int LINE_DURATION_MS =
+            CARRIAGE_ANIMATION_DURATION_MS + CARRIAGE_ANIMATION_RETURN_DURATION_MS;
+
+    /**
+     * Frames repeat with {@link #LOOP_PERIOD_MS} from here on: the first page is special, every
+     * following page types the same lines.
+     */
+    static final long LOOP_START_MS = INTRO_DURATION_MS + PAGE_CYCLE * LINE_DURATION_MS;
+    static final long LOOP_PERIOD_MS = PAGE_CYCLE * LINE_DURATION_MS;
+
+    private static final float MAX_PAGE_PERCENT = 0.6f;
+    private static final float INTRO_RETURN_FROM = 0.5f;
+    private static final float RETURN_FROM = 1f;
+    private static final float RETURN_TO = 0.01f;
+
+    /**
+     * Offsets from the start of a line at which each step becomes visible. They follow the
+     * accelerate-decelerate curve the carriage has always moved with.
+     */
+    private static final long[] STEP_TIMES_MS = new long[LAST_STEP + 1];
+
+    static {
+        for (int step = FIRST_STEP; step <= LAST_STEP; step++) {
+            float fraction = (step - FIRST_STEP) / (float) (LAST_STEP - FIRST_STEP);
+            STEP_TIMES_MS[step] = (long) Math.ceil(CARRIAGE_ANIMATION_DURATION_MS
+                    * Math.acos(1 - 2 * fraction) / Math.PI);
+        }
+    }
+
+    private static final int PHASE_IDLE = 0;
+    private static final int PHASE_PAGE = 1;
+    private static final int PHASE_INTRO_RETURN = 2;
+    private static final int PHASE_TYPING = 3;
+    private static final int PHASE_RETURN = 4;
+    private static final int PHASE_STATIC = 5;
+
+    /**
+     * Trace section names of the phases, constant so that tracing does not allocate.
+     */
+    private static final String[] PHASE_SECTION_NAMES = {
+            "Typewriter idle",
+            "Typewriter page feed",
+            "Typewriter intro carriage return",
+            "Typewriter typing",
+            "Typewriter carriage return",
+            "Typewriter static",
+    };
+
+    private final TypewriterTimeline timeline = new TypewriterTimeline();
+    private final TypedLetters letters = new TypedLetters(PAGE_CYCLE, LAST_STEP);
+    private final TypewriterFrame frame = new TypewriterFrame(letters);
+
+    private long seed;
+    private int carriageOffset;
+
+    private int phase = PHASE_IDLE;
+    private long lineIndex;
+    private int step;
+    private int line;
+
+    TypewriterAnimationModel(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param carriageOffset how far the carriage travels from the center, in pixels
+     */
+    void setCarriageOffset(int carriageOffset) {
+        this.carriageOffset = carriageOffset;
+        buildTimeline();
+    }
+
+    /**
+     * @param seed seed of the key choice
+     */
+    void setSeed(long seed) {
+        this.seed = seed;
+        buildTimeline();
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    private void buildTimeline() {
+        timeline.build(seed, carriageOffset,
+                getReturnX(RETURN_FROM, CARRIAGE_ANIMATION_RETURN_DURATION_MS));
+    }
+
+    /**
+     * Start the animation from the beginning.
+     *
+     * @param skipAnimation whether to jump straight to a still typewriter ready to type
+     */
+    void start(boolean skipAnimation) {
+        letters.clear();
+        lineIndex = 0;
+        line = 0;
+        if (skipAnimation) {
+            phase = PHASE_STATIC;
+            step = FIRST_STEP;
+            frame.setCarriage(-carriageOffset, EMPTY_KEY);
+            setTypingLine(0);
+        } else {
+            phase = PHASE_PAGE;
+            update(0);
+        }
+    }
+
+    void stop() {
+        phase = PHASE_IDLE;
+        letters.clear();
+        frame.setCarriage(0, EMPTY_KEY);
+        frame.setLine(0, false);
+        frame.setPage(0f, TypewriterFrame.PAGE_LEVEL_MAX, 0, false);
+    }
+
+    /**
+     * @return whether {@link #start(boolean)} was called without a matching {@link #stop()}
+     */
+    boolean isStarted() {
+        return phase != PHASE_IDLE;
+    }
+
+    /**
+     * @return whether the page has been fed in and the typewriter is typing
+     */
+    boolean isTyping() {
+        return frame.isTyping();
+    }
+
+    /**
+     * @return whether the model was started with the animation skipped and stands still
+     */
+    boolean isStatic() {
+        return phase == PHASE_STATIC;
+    }
+
+    /**
+     * @return current phase, only meaningful as a trace counter
+     */
+    int getPhase() {
+        return phase;
+    }
+
+    String getPhaseSectionName() {
+        return PHASE_SECTION_NAMES[phase];
+    }
+
+    /**
+     * @return carriage step of the line being typed
+     */
+    int getStep() {
+        return step;
+    }
+
+    TypewriterFrame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Advance the animation. Time must not go backwards.
+     *
+     * @param elapsed time since {@link #start(boolean)} in milliseconds
+     */
+    void update(long elapsed) {
+        if (phase == PHASE_IDLE || phase == PHASE_STATIC) {
+            return;
+        }
+
+        if (elapsed < PAGE_ANIMATION_DURATION_MS) {
+            phase = PHASE_PAGE;
+            setIntroPage(MAX_PAGE_PERCENT
+                    * interpolate(elapsed / (float) PAGE_ANIMATION_DURATION_MS));
+            frame.setCarriage(0, EMPTY_KEY);
+            return;
+        }
+        if (elapsed < INTRO_DURATION_MS) {
+            phase = PHASE_INTRO_RETURN;
+            setIntroPage(MAX_PAGE_PERCENT);
+            frame.setCarriage(getReturnX(INTRO_RETURN_FROM,
+                    elapsed - PAGE_ANIMATION_DURATION_MS), EMPTY_KEY);
+            return;
+        }
+
+        if (phase == PHASE_PAGE || phase == PHASE_INTRO_RETURN) {
+            phase = PHASE_TYPING;
+            lineIndex = 0;
+            // The very first line also types a key on the first step
+            step = FIRST_STEP - 1;
+            frame.setCarriage(-carriageOffset, EMPTY_KEY);
+            setTypingLine(0);
+        }
+
+        while (true) {
+            final long lineElapsed = elapsed - INTRO_DURATION_MS - lineIndex * LINE_DURATION_MS;
+            if (phase == PHASE_TYPING) {
+                final int target = lineElapsed >= CARRIAGE_ANIMATION_DURATION_MS ? LAST_STEP
+                        : getStep(lineElapsed);
+                while (step < target) {
+                    typeKey(++step);
+                }
+                if (lineElapsed < CARRIAGE_ANIMATION_DURATION_MS) {
+                    return;
+                }
+                startReturn();
+            }
+
+            final long returnElapsed = lineElapsed - CARRIAGE_ANIMATION_DURATION_MS;
+            if (returnElapsed < CARRIAGE_ANIMATION_RETURN_DURATION_MS) {
+                frame.setCarriage(getReturnX(RETURN_FROM, returnElapsed), EMPTY_KEY);
+                return;
+            }
+
+            // The first step of every following line is spent returning the carriage
+            frame.setCarriage(getReturnX(RETURN_FROM, CARRIAGE_ANIMATION_RETURN_DURATION_MS),
+                    EMPTY_KEY);
+            lineIndex++;
+            phase = PHASE_TYPING;
+            step = FIRST_STEP;
+        }
+    }
+
+    /**
+     * @param elapsed time since {@link #start(boolean)} in milliseconds
+     * @return time since {@link #start(boolean)} at which the frame changes next, {@code elapsed}
+     * itself if it changes continuously or {@link #NO_FRAME} if it does not change anymore
+     */
+    long getNextFrameTime(long elapsed) {
+        return getNextFrameTime(elapsed, 1);
+    }
+
+    /**
+     * Same as {@link #getNextFrameTime(long)}, but while typing only every
+     * {@code stepInterval}-th step asks for a frame. The keys of the skipped steps are typed all
+     * the same and show up together on the next frame.
+     */
+    long getNextFrameTime(long elapsed, int stepInterval) {
+        switch (phase) {
+            case PHASE_TYPING:
+                final long lineStart = INTRO_DURATION_MS + lineIndex * LINE_DURATION_MS;
+                final int nextStep = step + stepInterval;
+                return lineStart + (nextStep <= LAST_STEP ? STEP_TIMES_MS[nextStep]
+                        : CARRIAGE_ANIMATION_DURATION_MS);
+            case PHASE_PAGE:
+            case PHASE_INTRO_RETURN:
+            case PHASE_RETURN:
+                return elapsed;
+            default:
+                return NO_FRAME;
+        }
+    }
+
+    private void typeKey(int step) {
+        final int row = lineIndex == 0 ? TypewriterTimeline.FIRST_LINE_ROW : line;
+        final int pressedKey = timeline.getKey(row, step);
+        if (step != FIRST_STEP) {
+            if (pressedKey == SPACE_KEY) {
+                letters.removeLetter(line);
+            }
+            letters.addOffset(line, timeline.getMotion(row, step));
+        }
+        letters.addLetter(line);
+        frame.setCarriage(timeline.getCarriageX(row, step), pressedKey);
+    }
+
+    private void startReturn() {
+        phase = PHASE_RETURN;
+        if (line < PAGE_CYCLE - 1) {
+            setTypingLine(line + 1);
+        } else {
+            letters.clear();
+            setTypingLine(0);
+        }
+    }
+
+    private void setTypingLine(int line) {
+        this.line = line;
+        frame.setLine(line, true);
+        frame.setPage(MAX_PAGE_PERCENT, 5000 + 2000 * line, 10000 - 3333 * line, false);
+    }
+
+    private void setIntroPage(float pagePercent) {
+        frame.setLine(0, false);
+        frame.setPage(pagePercent, (int) (10000 - pagePercent * 10000),
+                (int) (2000 + pagePercent * 9000), true);
+    }
+
+    private int getReturnX(float from, long returnElapsed) {
+        final float value = from + (RETURN_TO - from)
+                * interpolate(returnElapsed / (float) CARRIAGE_ANIMATION_RETURN_DURATION_MS);
+        return -carriageOffset + (int) (carriageOffset * 2 * value);
+    }
+
+    private static int getStep(long lineElapsed) {
+        int step = FIRST_STEP;
+        while (step < LAST_STEP && STEP_TIMES_MS[step + 1] <= lineElapsed) {
+            step++;
+        }
+        return step;
+    }
+
+    /**
+     * Accelerate-decelerate curve used by the platform animators by default.
+     */
+    private static float interpolate(float input) {
+        return (float) (Math.cos((input + 1) * Math.PI) / 2.0f) + 0.5f;
+    }
+}
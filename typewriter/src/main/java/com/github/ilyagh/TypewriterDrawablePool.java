@@ -0,0 +1,260 @@
+package com.github.ilyagh;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.content.ContextCompat;
+import com.github.ilyagh.typewriter.R;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide pool of what every {@link TypewriterRefreshDrawable} of the same density and
+ * width can share: the inflated state of the typewriter drawables and the static layer rendered
+ * from them. Entries are reference counted.
+ * <p>
+ * Every drawable still creates its own {@link Drawable} instances from the shared constant
+ * states, so bounds and levels stay per instance. The pool is only used from the UI thread,
+ * {@link #prewarm} prepares an entry in the background before the pool can see it.
+ * </p>
+ * <p>
+ * Entries that no drawable holds any more, or that were prewarmed and never acquired, stay in
+ * the pool until the system asks the app to trim its memory. A layout that is detached and
+ * attached again, e.g. a page of a ViewPager or a RecyclerView, finds its entry still rendered.
+ * </p>
+ */
+class TypewriterDrawablePool {
+
+    static final int CARRIAGE_PART1 = 0;
+    static final int CARRIAGE_PART2 = 1;
+    static final int CARRIAGE_PART3 = 2;
+    static final int BUTTON = 3;
+    static final int BUTTON_PRESSED = 4;
+    static final int PAGE = 5;
+    static final int PAGE_BACK = 6;
+    static final int KEYBOARD = 7;
+    static final int TYPEWRITER = 8;
+    static final int SPACE = 9;
+    static final int SPACE_PRESSED = 10;
+    static final int LETTER = 11;
+
+    private static final int[] RESOURCES = {
+            R.drawable.carriage_part1,
+            R.drawable.carriage_part2,
+            R.drawable.carriage_part3,
+            R.drawable.button,
+            R.drawable.button_pressed,
+            R.drawable.page,
+            R.drawable.page_revers,
+            R.drawable.keyboard_bg,
+            R.drawable.machine,
+            R.drawable.space,
+            R.drawable.space_pressed,
+            R.drawable.letter
+    };
+
+    private static final List<Entry> entries = new ArrayList<>();
+    private static final List<Entry> pendingEntries = new ArrayList<>();
+    private static final ComponentCallbacks2 trimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trim();
+        }
+
+        @Override
+        public void onLowMemory() {
+            trim();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+    private static boolean isTrimRegistered;
+
+    private TypewriterDrawablePool() {
+    }
+
+    /**
+     * @param context context of the layout, only used to inflate a missing entry
+     * @param width   width of the layout
+     * @return entry shared by all layouts of the same density and width, to be handed back with
+     * {@link #release(Entry)}
+     */
+    static Entry acquire(Context context, int width) {
+        final float density = context.getResources().getDisplayMetrics().density;
+        registerTrimCallbacks(context);
+        Entry entry = find(entries, density, width);
+        if (entry == null) {
+            entry = new Entry(density, width);
+            entry.inflate(context, false);
+            entries.add(entry);
+        }
+        entry.refCount++;
+        return entry;
+    }
+
+    /**
+     * Inflate and render an entry on a background thread and add it to the pool on the UI thread
+     * once it is ready. Does nothing if the pool already has or is preparing such an entry.
+     *
+     * @param context  context of the layout
+     * @param width    width of the layout
+     * @param renderer drawable used by nothing else, renders the static layer of the entry on
+     *                 the background thread
+     */
+    static void prewarm(Context context, int width, final TypewriterRefreshDrawable renderer) {
+        final float density = context.getResources().getDisplayMetrics().density;
+        if (find(entries, density, width) != null || find(pendingEntries, density, width) != null) {
+            return;
+        }
+
+        registerTrimCallbacks(context);
+        final Context appContext = context.getApplicationContext();
+        final Entry entry = new Entry(density, width);
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        pendingEntries.add(entry);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                entry.inflate(appContext, true);
+                renderer.prewarm(entry);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(entry);
+                    }
+                });
+            }
+        }, "TypewriterPrewarm").start();
+    }
+
+    /**
+     * Inflate an entry that is not part of the pool, for drawing on another thread. Its
+     * drawables are mutated, so they don't share their state with anything the UI thread draws.
+     * Hand it back with {@link #releaseUnshared(Entry)}.
+     */
+    static Entry inflateUnshared(Context context, int width) {
+        final Entry entry = new Entry(context.getResources().getDisplayMetrics().density, width);
+        entry.inflate(context, true);
+        return entry;
+    }
+
+    static void releaseUnshared(Entry entry) {
+        entry.release();
+    }
+
+    private static void publish(Entry entry) {
+        pendingEntries.remove(entry);
+        if (find(entries, entry.density, entry.width) != null) {
+            // The UI thread needed it first and inflated its own
+            entry.release();
+            return;
+        }
+        entries.add(entry);
+    }
+
+    private static void registerTrimCallbacks(Context context) {
+        if (!isTrimRegistered) {
+            isTrimRegistered = true;
+            context.getApplicationContext().registerComponentCallbacks(trimCallbacks);
+        }
+    }
+
+    private static Entry find(List<Entry> entries, float density, int width) {
+        for (int i = 0; i < entries.size(); i++) {
+            final Entry entry = entries.get(i);
+            if (entry.density == density && entry.width == width) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hand an entry back. The pool keeps it until {@link #trim()}, even once no drawable holds
+     * it any more.
+     */
+    static void release(Entry entry) {
+        entry.refCount--;
+    }
+
+    /**
+     * Drop the entries no drawable holds.
+     */
+    static void trim() {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            final Entry entry = entries.get(i);
+            if (entry.refCount == 0) {
+                entries.remove(i);
+                entry.release();
+            }
+        }
+    }
+
+    static class Entry {
+
+        private final float density;
+        private final int width;
+        private final Drawable.ConstantState[] states =
+                new Drawable.ConstantState[RESOURCES.length];
+        private final StaticLayerCache staticLayer = new StaticLayerCache();
+        private final ScaledSpriteCache dragSprites = new ScaledSpriteCache(RESOURCES.length);
+        private int refCount;
+
+        private Entry(float density, int width) {
+            this.density = density;
+            this.width = width;
+        }
+
+        private void inflate(Context context, boolean mutate) {
+            for (int i = 0; i < RESOURCES.length; i++) {
+                Drawable drawable = ContextCompat.getDrawable(context, RESOURCES[i]);
+                if (mutate) {
+                    drawable = drawable.mutate();
+                }
+                states[i] = drawable.getConstantState();
+            }
+        }
+
+        int getWidth() {
+            return width;
+        }
+
+        /**
+         * @param drawable  one of the drawable indices of {@link TypewriterDrawablePool}
+         * @param resources resources of the layout
+         * @return new drawable sharing the inflated state of the entry
+         */
+        Drawable newDrawable(int drawable, Resources resources) {
+            return states[drawable].newDrawable(resources);
+        }
+
+        /**
+         * @return static layer shared by all drawables of the entry, built by whichever of them
+         * draws first
+         */
+        StaticLayerCache getStaticLayer() {
+            return staticLayer;
+        }
+
+        /**
+         * @return sprites of the moving parts drawn while the header is dragged, with the
+         * drawable indices of {@link TypewriterDrawablePool} as sprite ids
+         */
+        ScaledSpriteCache getDragSprites() {
+            return dragSprites;
+        }
+
+        private void release() {
+            staticLayer.release();
+            dragSprites.release();
+        }
+    }
+}
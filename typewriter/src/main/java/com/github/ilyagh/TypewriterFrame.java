@@ -0,0 +1,102 @@
+package com.github.ilyagh;
+
+/**
+ * Description of a single frame of the typewriter animation, produced by
+ * {@link TypewriterAnimationModel} and rendered by {@link TypewriterRefreshDrawable}.
+ * The instance is reused from frame to frame.
+ */
+class TypewriterFrame {
+
+    static final int PAGE_LEVEL_MAX = 10000;
+
+    private final TypedLetters letters;
+
+    private int carriageX;
+    private int pressedKey = TypewriterAnimationModel.EMPTY_KEY;
+    private int line;
+    private boolean isTyping;
+
+    private float pagePercent;
+    private int pageLevel = PAGE_LEVEL_MAX;
+    private int pageBackLevel;
+    private boolean isPageMoving;
+
+    TypewriterFrame(TypedLetters letters) {
+        this.letters = letters;
+    }
+
+    /**
+     * @return horizontal carriage translation in pixels
+     */
+    int getCarriageX() {
+        return carriageX;
+    }
+
+    /**
+     * @return index of the pressed key, {@link TypewriterAnimationModel#SPACE_KEY} or
+     * {@link TypewriterAnimationModel#EMPTY_KEY}
+     */
+    int getPressedKey() {
+        return pressedKey;
+    }
+
+    /**
+     * @return page line the carriage is on
+     */
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * @return whether typing has started, as opposed to the page being fed in
+     */
+    boolean isTyping() {
+        return isTyping;
+    }
+
+    /**
+     * @return how far the page has been fed in, from 0 to 0.6
+     */
+    float getPagePercent() {
+        return pagePercent;
+    }
+
+    int getPageLevel() {
+        return pageLevel;
+    }
+
+    int getPageBackLevel() {
+        return pageBackLevel;
+    }
+
+    /**
+     * @return whether the page is being fed in
+     */
+    boolean isPageMoving() {
+        return isPageMoving;
+    }
+
+    /**
+     * @return letters typed on every line, each one as the carriage motion of its key press
+     */
+    TypedLetters getLetters() {
+        return letters;
+    }
+
+    void setCarriage(int carriageX, int pressedKey) {
+        this.carriageX = carriageX;
+        this.pressedKey = pressedKey;
+    }
+
+    void setLine(int line, boolean isTyping) {
+        this.line = line;
+        this.isTyping = isTyping;
+    }
+
+    void setPage(float pagePercent, int pageLevel, int pageBackLevel, boolean isPageMoving) {
+        this.pagePercent = pagePercent;
+        this.pageLevel = pageLevel;
+        this.pageBackLevel = pageBackLevel;
+        this.isPageMoving = isPageMoving;
+    }
+}
@@ -1,16 +1,17 @@
 package com.github.ilyagh;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
 import android.graphics.Canvas;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.ScaleDrawable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import com.github.ilyagh.typewriter.R;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static android.view.Gravity.TOP;
 
@@ -18,40 +19,26 @@ class TypewriterRefreshDrawable extends BaseRefreshDrawable {
 
     private TypewriterRefreshLayout parent;
 
-    private boolean hasAnimationStarted = false;
-    private boolean hasPageAnimationStarted = false;
     private boolean skipAnimation = false;
 
     private float percent;
-    private int currentStep = FIRST_STEP;
-    private int pageRotateCycle;
 
     private int screenWidth;
     private int top;
 
-    private static final int CARRIAGE_ANIMATION_DURATION_MS = 2000;
-    private static final int CARRIAGE_ANIMATION_RETURN_DURATION_MS = 500;
-
-    private static final int FIRST_STEP = 1;
-    private static final int LAST_STEP = 17;
-
-    private static final int EMPTY_KEY = -1;
-    private static final int SPACE_KEY = -2;
-
-    private static final int TOTAL_NUMBER_OF_PHYSICAL_KEYS = 23;
     private static final int TOP_LINE_KEYS_NUMBER = 9;
     private static final int MIDDLE_LINE_KEYS_NUMBER = 10;
     private static final int BOTTOM_LINE_KEYS_NUMBER = 9;
     private static final int SPACE_START_POSITION = 2;
     private static final int SPACE_END_POSITION = 6;
+    private static final int TOTAL_NUMBER_OF_KEY_SLOTS =
+            TOP_LINE_KEYS_NUMBER + MIDDLE_LINE_KEYS_NUMBER + BOTTOM_LINE_KEYS_NUMBER;
 
-    private static final float BACKGROUND_RATIO = 0.5f;
-    private static final int PAGE_CYCLE = 3;
-    private int backgroundHeight;
-
-    private final ValueAnimator carriageAnimator = new ValueAnimator();
-    private final ValueAnimator carriageReturnAnimator = new ValueAnimator();
-    private final ValueAnimator pageAnimator = new ValueAnimator();
+    private final TypewriterAnimationModel model = new TypewriterAnimationModel(
+            new Random().nextLong());
+    private final TypewriterFrame frame = model.getFrame();
+    private final HeaderClock clock;
+    private long startTime;
 
     private List<Drawable> parts;
     private Drawable button;
@@ -60,217 +47,342 @@ class TypewriterRefreshDrawable extends BaseRefreshDrawable {
     private Drawable spacePressed;
     private Drawable keyboard;
     private Drawable letter;
+    private LetterPaths letterPaths;
     private ScaleDrawable page;
     private ScaleDrawable pageBack;
     private Drawable typewriter;
     private Canvas canvas;
 
+    @Nullable
+    private Drawable headerBackground;
+    private int invalidationCount;
+    private int quality = TypewriterRefreshLayout.QUALITY_FULL;
+
+    @Nullable
+    private TypewriterDrawablePool.Entry sharedDrawables;
+    /**
+     * Set while the header is dragged and drawn through sprites.
+     */
+    @Nullable
+    private ScaledSpriteCache dragSprites;
+    private final StaticLayerCache.Painter staticLayerPainter = new StaticLayerCache.Painter() {
+        @Override
+        public void paint(Canvas canvas, boolean withKeys) {
+            paintStaticLayer(canvas, withKeys);
+        }
+    };
+    private final Rect staticLayerBounds = new Rect();
+    private final Rect pressedKeyHole = new Rect();
+    private final int[] keyTranslationX = new int[TOTAL_NUMBER_OF_KEY_SLOTS];
+    private final int[] keyTranslationY = new int[TOTAL_NUMBER_OF_KEY_SLOTS];
+    private final boolean[] hasKey = new boolean[TOTAL_NUMBER_OF_KEY_SLOTS];
+    private int spaceTranslationY;
+    private int typewriterPadding;
+    private float density;
+
     private int carriageOffset;
     private int offset;
-    private int carriageX;
-    private float pagePercent;
-    private int pressedKey = EMPTY_KEY;
     private int pageOffset;
-    private int numberOfLettersOnString[];
-    private int lastType;
-    private List<List<Integer>> letterOffset = new ArrayList<>();
+
+    @Nullable
+    private RefreshFrameMetrics frameMetrics;
+
+    private boolean isInitRequested;
 
     TypewriterRefreshDrawable(final TypewriterRefreshLayout layout) {
         super(layout);
         parent = layout;
+        clock = layout.getHeaderClock();
+    }
 
-        layout.post(new Runnable() {
-            @Override
-            public void run() {
-                init();
-            }
-        });
+    /**
+     * Set the drawable up now, or as soon as the layout has a width. Nothing is loaded until the
+     * header is about to be shown for the first time or this is called.
+     */
+    void requestInit() {
+        isInitRequested = true;
+        init();
+    }
+
+    boolean isInitRequested() {
+        return isInitRequested;
     }
 
     @Override
     protected void init() {
         int viewWidth = parent.getWidth();
-        if (viewWidth <= 0 || viewWidth == screenWidth) {
+        if (!isInitRequested || viewWidth <= 0
+                || viewWidth == screenWidth && sharedDrawables != null) {
             return;
         }
 
-        setupDrawables();
-        setupAnimations();
+        acquireSharedDrawables(viewWidth);
+        if (viewWidth == screenWidth) {
+            // Attached again at the same size, the drawables are still set up
+            return;
+        }
+
+        final boolean wasStarted = model.isStarted();
+        TypewriterTrace.beginSection(TypewriterTrace.INIT);
+        try {
+            setupDrawables();
+            setupAnimations();
+
+            screenWidth = viewWidth;
+            final StaticLayerCache staticLayer = sharedDrawables.getStaticLayer();
+            if (!staticLayer.isValid(screenWidth, density)) {
+                buildStaticLayer(staticLayer);
+            }
+        } finally {
+            TypewriterTrace.endSection();
+        }
 
-        screenWidth = viewWidth;
-        backgroundHeight = (int) (BACKGROUND_RATIO * screenWidth);
+        setTop(-parent.getTotalDragDistance());
 
-        top = -parent.getTotalDragDistance();
-        for (int i = 0; i < PAGE_CYCLE; i++) {
-            letterOffset.add(new ArrayList<Integer>());
+        if (wasStarted) {
+            // Refreshing started before the layout had a size, nothing has been drawn yet
+            startModel();
         }
-        numberOfLettersOnString = new int[3];
+    }
+
+    private void acquireSharedDrawables(int width) {
+        release();
+        sharedDrawables = TypewriterDrawablePool.acquire(getContext(), width);
+    }
+
+    /**
+     * Hand the shared drawables back to the pool. {@link #init()} acquires them again.
+     */
+    void release() {
+        if (sharedDrawables != null) {
+            TypewriterDrawablePool.release(sharedDrawables);
+            sharedDrawables = null;
+        }
+    }
+
+    /**
+     * Prepare the shared drawables for the current width on a background thread, see
+     * {@link TypewriterDrawablePool#prewarm}.
+     */
+    void prewarm(int width) {
+        if (sharedDrawables == null) {
+            TypewriterDrawablePool.prewarm(getContext(), width,
+                    new TypewriterRefreshDrawable(parent));
+        }
+    }
+
+    /**
+     * Render everything the entry can cache: the static layer and the drag sprites. Runs on a
+     * background thread on a drawable used for nothing else.
+     */
+    void prewarm(TypewriterDrawablePool.Entry entry) {
+        // Runs before the entry is published, nothing else draws its drawables yet
+        sharedDrawables = entry;
+        setupDrawables();
+        screenWidth = entry.getWidth();
+        buildStaticLayer(entry.getStaticLayer());
+        final ScaledSpriteCache sprites = entry.getDragSprites();
+        for (int i = 0; i < parts.size(); i++) {
+            sprites.prepare(TypewriterDrawablePool.CARRIAGE_PART1 + i, parts.get(i));
+        }
+        sprites.prepare(TypewriterDrawablePool.PAGE, page);
+        // The moving parts at full scale, the pressed keys and the back of the page are left to
+        // draw(): they are shapes whose paths every drawable builds for itself, and with hardware
+        // rendering they are rasterised on the render thread, so there is nothing to share
+        sharedDrawables = null;
+    }
+
+    private Drawable newDrawable(int drawable) {
+        return sharedDrawables.newDrawable(drawable, getContext().getResources());
     }
 
     private void setupDrawables() {
         parts = new ArrayList<>();
-        parts.add(ContextCompat.getDrawable(getContext(), R.drawable.carriage_part1));
-        parts.add(ContextCompat.getDrawable(getContext(), R.drawable.carriage_part2));
-        parts.add(ContextCompat.getDrawable(getContext(), R.drawable.carriage_part3));
+        parts.add(newDrawable(TypewriterDrawablePool.CARRIAGE_PART1));
+        parts.add(newDrawable(TypewriterDrawablePool.CARRIAGE_PART2));
+        parts.add(newDrawable(TypewriterDrawablePool.CARRIAGE_PART3));
 
         carriageOffset = (int) getContext().getResources().getDimension(R.dimen.carriage_offset);
         pageOffset = (int) getContext().getResources().getDimension(R.dimen.page_offset);
         offset = (int) getContext().getResources().getDimension(R.dimen.offset);
+        typewriterPadding =
+                (int) getContext().getResources().getDimension(R.dimen.typewriter_padding);
+        density = getContext().getResources().getDisplayMetrics().density;
 
-        button = ContextCompat.getDrawable(getContext(), R.drawable.button);
-        buttonPressed = ContextCompat.getDrawable(getContext(), R.drawable.button_pressed);
+        button = newDrawable(TypewriterDrawablePool.BUTTON);
+        buttonPressed = newDrawable(TypewriterDrawablePool.BUTTON_PRESSED);
 
-        page = new ScaleDrawable(ContextCompat.getDrawable(getContext(), R.drawable.page),
-                TOP, -1, 1);
+        page = new ScaleDrawable(newDrawable(TypewriterDrawablePool.PAGE), TOP, -1, 1);
         page.setLevel(10000);
-        pageBack =
-                new ScaleDrawable(ContextCompat.getDrawable(getContext(), R.drawable.page_revers),
-                        TOP, -1, 1);
+        pageBack = new ScaleDrawable(newDrawable(TypewriterDrawablePool.PAGE_BACK), TOP, -1, 1);
         pageBack.setLevel(0);
 
-        keyboard = ContextCompat.getDrawable(getContext(), R.drawable.keyboard_bg);
-        typewriter = ContextCompat.getDrawable(getContext(), R.drawable.machine);
-        space = ContextCompat.getDrawable(getContext(), R.drawable.space);
-        spacePressed = ContextCompat.getDrawable(getContext(), R.drawable.space_pressed);
-        letter = ContextCompat.getDrawable(getContext(), R.drawable.letter);
+        keyboard = newDrawable(TypewriterDrawablePool.KEYBOARD);
+        typewriter = newDrawable(TypewriterDrawablePool.TYPEWRITER);
+        space = newDrawable(TypewriterDrawablePool.SPACE);
+        spacePressed = newDrawable(TypewriterDrawablePool.SPACE_PRESSED);
+        letter = newDrawable(TypewriterDrawablePool.LETTER);
+        letterPaths = new LetterPaths(TypewriterAnimationModel.PAGE_CYCLE,
+                ContextCompat.getColor(getContext(), R.color.letter_color),
+                letter.getIntrinsicWidth(), letter.getIntrinsicHeight(),
+                getContext().getResources().getDimension(R.dimen.letter_corner_radius));
+
+        setupKeyTranslations();
     }
 
-    @Override
-    protected void setupAnimations() {
-        carriageAnimator.cancel();
-        carriageAnimator.setDuration(CARRIAGE_ANIMATION_DURATION_MS);
-        carriageAnimator.setIntValues(FIRST_STEP, LAST_STEP);
-        carriageAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        carriageAnimator.setRepeatMode(ValueAnimator.RESTART);
-        carriageAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                int value = (int) valueAnimator.getAnimatedValue();
-                currentStep = !skipAnimation ? value : 1;
-                invalidateSelf();
-                if (skipAnimation) {
-                    valueAnimator.cancel();
-                }
-            }
-        });
-
-        carriageAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationRepeat(Animator animation) {
-                carriageAnimator.pause();
-                carriageReturnAnimator.start();
-                if (pageRotateCycle < PAGE_CYCLE - 1) {
-                    pageRotateCycle++;
-                    currentStep = FIRST_STEP;
-                    pressedKey = EMPTY_KEY;
-                } else {
-                    resetAnimation();
-                }
-            }
+    private void setupKeyTranslations() {
+        int buttonSize = button.getIntrinsicWidth();
+        int buttonXTranslation = keyboard.getIntrinsicWidth();
+        for (int i = 0; i < TOP_LINE_KEYS_NUMBER; i++) {
+            buttonXTranslation -= buttonSize * 3;
+            setKeyTranslation(i, buttonXTranslation - buttonSize, buttonSize * 3);
+        }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                resetAnimation();
+        buttonXTranslation = keyboard.getIntrinsicWidth();
+        for (int i = 0; i < MIDDLE_LINE_KEYS_NUMBER; i++) {
+            buttonXTranslation -= buttonSize * 3;
+            setKeyTranslation(TOP_LINE_KEYS_NUMBER + i,
+                    buttonXTranslation + (int) (buttonSize * 0.5), 0);
+        }
+
+        buttonXTranslation = keyboard.getIntrinsicWidth();
+        final int keysBefore = TOP_LINE_KEYS_NUMBER + MIDDLE_LINE_KEYS_NUMBER;
+        for (int i = 0; i < BOTTOM_LINE_KEYS_NUMBER; i++) {
+            buttonXTranslation -= buttonSize * 3;
+            if (i < SPACE_START_POSITION || i > SPACE_END_POSITION) {
+                setKeyTranslation(keysBefore + i, buttonXTranslation - buttonSize,
+                        -(buttonSize * 3));
             }
-        });
-
-        carriageReturnAnimator.cancel();
-        carriageReturnAnimator.setFloatValues(0.5f, 0.01f);
-        carriageReturnAnimator.setDuration(CARRIAGE_ANIMATION_RETURN_DURATION_MS);
-        carriageReturnAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                float value = !skipAnimation ?
-                        (float) valueAnimator.getAnimatedValue() : 0.01f;
-                carriageX = -carriageOffset + (int) (carriageOffset * 2 * value);
-                invalidateSelf();
+        }
+        spaceTranslationY = -(buttonSize * 3);
+    }
+
+    private void setKeyTranslation(int key, int translationX, int translationY) {
+        hasKey[key] = true;
+        keyTranslationX[key] = translationX;
+        keyTranslationY[key] = translationY;
+    }
+
+    private void buildStaticLayer(StaticLayerCache staticLayer) {
+        staticLayerBounds.setEmpty();
+        staticLayerBounds.union(layout(typewriter, 0, typewriterPadding));
+        staticLayerBounds.union(layout(keyboard, 0, 0));
+        for (int i = 0; i < TOTAL_NUMBER_OF_KEY_SLOTS; i++) {
+            if (hasKey[i]) {
+                staticLayerBounds.union(layout(button, keyTranslationX[i], keyTranslationY[i]));
             }
-        });
-
-        carriageReturnAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                if (!hasAnimationStarted) {
-                    startAnimation();
-                    carriageReturnAnimator.setFloatValues(1f, 0.01f);
-                } else {
-                    carriageAnimator.resume();
+        }
+        staticLayerBounds.union(layout(space, 0, spaceTranslationY));
+        staticLayer.build(screenWidth, density, staticLayerBounds, staticLayerPainter);
+    }
+
+    private void paintStaticLayer(Canvas layerCanvas, boolean withKeys) {
+        final Canvas frameCanvas = canvas;
+        canvas = layerCanvas;
+
+        drawTypewriter();
+        draw(keyboard, 0, 0);
+        if (withKeys) {
+            for (int i = 0; i < TOTAL_NUMBER_OF_KEY_SLOTS; i++) {
+                if (hasKey[i]) {
+                    draw(button, keyTranslationX[i], keyTranslationY[i]);
                 }
             }
-        });
-
-        pageAnimator.cancel();
-        pageAnimator.setDuration(500);
-        pageAnimator.setFloatValues(0, .6f);
-        pageAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                pagePercent = !skipAnimation ? (float) valueAnimator.getAnimatedValue() : 0f;
-                pageBack.setLevel((int) (2000 + pagePercent * 9000));
-                page.setLevel((int) (10000 - pagePercent * 10000));
-                invalidateSelf();
-            }
-        });
-        pageAnimator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                hasPageAnimationStarted = false;
-                startReturnAnimation();
-            }
-        });
-    }
+            draw(space, 0, spaceTranslationY);
+        }
 
-    @Override
-    public void start() {
-        resetOrigins();
-        animatePage();
+        canvas = frameCanvas;
     }
 
     @Override
-    public void stop() {
-        hasAnimationStarted = false;
-        skipAnimation = false;
+    protected void setupAnimations() {
         cancelAnimation();
-        resetOrigins();
+        model.setCarriageOffset(carriageOffset);
     }
 
-    private void startAnimation() {
-        hasAnimationStarted = true;
-        carriageX = -carriageOffset;
-        carriageAnimator.start();
+    @Override
+    public void start() {
+        setPercent(0f);
+        startModel();
     }
 
-    private void startReturnAnimation() {
-
-        carriageReturnAnimator.start();
+    private void startModel() {
+        startTime = clock.now();
+        // A still typewriter is better shown ready to type than with the page not fed in yet
+        model.start(skipAnimation || quality == TypewriterRefreshLayout.QUALITY_STATIC);
+        invalidateSelf();
+        clock.requestFrame();
     }
 
-    private void cancelAnimation() {
-        carriageAnimator.cancel();
-        carriageReturnAnimator.cancel();
+    @Override
+    public void stop() {
+        skipAnimation = false;
+        cancelAnimation();
+        setPercent(0f);
     }
 
-    private void animatePage() {
-        pageAnimator.start();
-        hasPageAnimationStarted = true;
+    private void cancelAnimation() {
+        model.stop();
+    }
+
+    /**
+     * Advance the animation, called by the {@link HeaderClock} of the layout.
+     *
+     * @param time clock time of the frame in milliseconds
+     * @return clock time at which the frame changes next, as required by
+     * {@link HeaderClock.Client#onFrame(long)}. Continuous phases ask for every frame, the
+     * typing phase only for the frame the next step is due at.
+     */
+    long onFrame(long time) {
+        if (!model.isStarted() || quality == TypewriterRefreshLayout.QUALITY_STATIC) {
+            return HeaderClock.NO_FRAME;
+        }
+        final long elapsed = time - startTime;
+        if (TypewriterTrace.isEnabled()) {
+            TypewriterTrace.beginSection(model.getPhaseSectionName());
+            model.update(elapsed);
+            TypewriterTrace.endSection();
+            TypewriterTrace.setCounter(TypewriterTrace.COUNTER_PHASE, model.getPhase());
+            TypewriterTrace.setCounter(TypewriterTrace.COUNTER_STEP, model.getStep());
+            TypewriterTrace.setCounter(TypewriterTrace.COUNTER_LINE, frame.getLine());
+        } else {
+            model.update(elapsed);
+        }
+        invalidateSelf();
+        final long next = model.getNextFrameTime(elapsed,
+                quality >= TypewriterRefreshLayout.QUALITY_HALF_STEP_RATE ? 2 : 1);
+        return next == TypewriterAnimationModel.NO_FRAME ? HeaderClock.NO_FRAME : startTime + next;
     }
 
-    private void resetOrigins() {
-        setPercent(0f);
-        carriageX = 0;
-        page.setLevel(10000);
-        pageBack.setLevel(0);
-        carriageReturnAnimator.setFloatValues(0.5f, 0.01f);
+    /**
+     * Bounds are kept to the part of the header revealed by the pull, the only part
+     * {@link #draw(Canvas)} draws in, so that an opaque background covers them edge to edge.
+     */
+    @Override
+    public void setBounds(int left, int top, int right, int bottom) {
+        super.setBounds(left, top, right,
+                top + Math.max(0, this.top + parent.getTotalDragDistance()));
     }
 
     @Override
-    public void setBounds(int left, int top, int right, int bottom) {
-        super.setBounds(left, top, right, backgroundHeight + top);
+    public int getOpacity() {
+        return headerBackground != null && headerBackground.getOpacity() == PixelFormat.OPAQUE
+                && screenWidth > 0 && sharedDrawables != null
+                ? PixelFormat.OPAQUE : PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * @param background drawn behind the typewriter over the whole visible part of the header,
+     *                   or null for none
+     */
+    void setHeaderBackground(@Nullable Drawable background) {
+        headerBackground = background;
+        invalidateSelf();
     }
 
     @Override
     public boolean isRunning() {
-        return hasAnimationStarted;
+        return model.isTyping();
     }
 
     @Override
@@ -283,22 +395,68 @@ class TypewriterRefreshDrawable extends BaseRefreshDrawable {
 
     private void setPercent(float percent) {
         this.percent = percent;
-        if (percent == 0f && carriageAnimator.isRunning()) {
+        TypewriterTrace.setCounter(TypewriterTrace.COUNTER_DRAG_PERCENT, (long) (percent * 100));
+        if (percent == 0f && model.isTyping()) {
             cancelAnimation();
         }
     }
 
     @Override
     public void offsetTopAndBottom(int offset) {
-        top += offset;
+        setTop(top + offset);
         invalidateSelf();
     }
 
     void setOffsetTopAndBottom(int offsetTop) {
-        top = offsetTop;
+        setTop(offsetTop);
+        invalidateSelf();
+    }
+
+    private void setTop(int top) {
+        this.top = top;
+        final Rect bounds = getBounds();
+        setBounds(bounds.left, bounds.top, bounds.right, bounds.bottom);
+    }
+
+    void setSeed(long seed) {
+        model.setSeed(seed);
+    }
+
+    /**
+     * @param quality one of the quality levels of {@link TypewriterRefreshLayout}, each one
+     *                dropping a little more of the animation than the one before
+     */
+    void setQuality(int quality) {
+        this.quality = quality;
+        if (quality != TypewriterRefreshLayout.QUALITY_STATIC && !skipAnimation
+                && model.isStatic()) {
+            // Started while animations were off, the model stood still: play it from the start
+            startModel();
+        }
         invalidateSelf();
     }
 
+    int getQuality() {
+        return quality;
+    }
+
+    void setFrameMetrics(@Nullable RefreshFrameMetrics frameMetrics) {
+        this.frameMetrics = frameMetrics;
+    }
+
+    int getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    @Override
+    public void invalidateSelf() {
+        invalidationCount++;
+        if (frameMetrics != null) {
+            frameMetrics.recordInvalidation(System.nanoTime());
+        }
+        super.invalidateSelf();
+    }
+
     void setSkipAnimation(boolean skipAnimation) {
         this.skipAnimation = skipAnimation;
     }
@@ -309,8 +467,10 @@ class TypewriterRefreshDrawable extends BaseRefreshDrawable {
 
     @Override
     public void draw(@NonNull Canvas canvas) {
-        if (screenWidth <= 0) return;
+        if (screenWidth <= 0 || sharedDrawables == null) return;
 
+        TypewriterTrace.beginSection(TypewriterTrace.DRAW);
+        final long drawStart = frameMetrics != null ? System.nanoTime() : 0L;
         final int saveCount = canvas.save();
 
         this.canvas = canvas;
@@ -318,67 +478,165 @@ class TypewriterRefreshDrawable extends BaseRefreshDrawable {
         canvas.translate(0, top);
         canvas.clipRect(0, -top, screenWidth, parent.getTotalDragDistance());
 
+        if (headerBackground != null) {
+            // Only the revealed part of the header, the clip above, is filled
+            headerBackground.setBounds(0, -top, screenWidth, parent.getTotalDragDistance());
+            headerBackground.draw(canvas);
+        }
+
         if (percent <= 1) {
             canvas.scale(percent, percent, screenWidth / 2, 0);
         }
+        // While dragged the moving parts stand still but scale on every frame
+        dragSprites = !model.isStarted() && percent < 1f ? sharedDrawables.getDragSprites() : null;
 
-        boolean shouldTypeKey = shouldTypeKey() && !carriageReturnAnimator.isRunning();
-        if (shouldTypeKey) {
-            pressedKey = getRandomKeyNumber();
-            if (shouldPressSpace()) {
-                pressedKey = SPACE_KEY;
-            }
+        drawContent(canvas);
+
+        canvas.restoreToCount(saveCount);
+
+        if (frameMetrics != null) {
+            frameMetrics.recordFrame(drawStart, System.nanoTime() - drawStart,
+                    model.isStarted());
         }
-        drawCarriage(shouldTypeKey);
-        drawTypewriter();
+        TypewriterTrace.endSection();
+    }
+
+    /**
+     * Draw the typewriter in layout coordinates, with the drag scale already applied.
+     */
+    void drawContent(Canvas canvas) {
+        this.canvas = canvas;
+        drawCarriage();
         drawKeyboard();
+    }
 
-        canvas.restoreToCount(saveCount);
+    /**
+     * Set up a drawable used only to render frames on a background thread, see
+     * {@link #renderFrame(Canvas, long)}.
+     *
+     * @param entry unshared drawables, see {@link TypewriterDrawablePool#inflateUnshared}
+     * @param seed  seed of the drawable whose frames are rendered
+     */
+    void prepareOffscreen(TypewriterDrawablePool.Entry entry, long seed) {
+        sharedDrawables = entry;
+        setupDrawables();
+        setupAnimations();
+        model.setSeed(seed);
+        screenWidth = entry.getWidth();
+        percent = 1f;
+        model.start(false);
+    }
+
+    /**
+     * Draw the refresh animation as it looks at the given time. Time must not go backwards.
+     *
+     * @param elapsed time since the animation started in milliseconds
+     */
+    void renderFrame(Canvas canvas, long elapsed) {
+        model.update(elapsed);
+        drawContent(canvas);
+    }
+
+    /**
+     * Show the fully revealed header dragged to the given percent, or the refresh animation at
+     * the given time from 1 on, for the next {@link #draw(Canvas)}. Used offscreen after
+     * {@link #prepareOffscreen}, e.g. by the golden frame tests.
+     *
+     * @param percent drag percent
+     * @param elapsed time since the animation started in milliseconds, ignored below 1
+     */
+    void setOffscreenFrame(float percent, long elapsed) {
+        this.percent = percent;
+        setTop(0);
+        if (percent < 1f) {
+            model.stop();
+        } else {
+            // Restarting lets frames be requested in any order
+            model.start(false);
+            model.update(elapsed);
+        }
     }
 
-    private void drawTypewriter() {
-        draw(typewriter, 0,
-                (int) getContext().getResources().getDimension(R.dimen.typewriter_padding));
+    long getSeed() {
+        return model.getSeed();
     }
 
-    private void drawKeyboard() {
-        draw(keyboard, 0, 0);
-        int buttonSize = button.getIntrinsicWidth();
-        drawTopLineKeys(buttonSize);
-        drawMiddleLineKeys(buttonSize);
-        drawBottomLineKeys(buttonSize);
+    int getCarriageOffset() {
+        return carriageOffset;
     }
 
-    private void drawTopLineKeys(int buttonSize) {
-        int buttonXTranslation = keyboard.getIntrinsicWidth();
-        for (int i = 0; i < TOP_LINE_KEYS_NUMBER; i++) {
-            buttonXTranslation -= buttonSize * 3;
-            draw(pressedKey == i ? buttonPressed : button, buttonXTranslation - (buttonSize),
-                    (buttonSize * 3));
-        }
+    int getScreenWidth() {
+        return screenWidth;
     }
 
-    private void drawMiddleLineKeys(int buttonSize) {
-        int buttonXTranslation = keyboard.getIntrinsicWidth();
-        for (int i = 0; i < MIDDLE_LINE_KEYS_NUMBER; i++) {
-            buttonXTranslation -= buttonSize * 3;
-            draw(pressedKey - TOP_LINE_KEYS_NUMBER == i ? buttonPressed : button,
-                    buttonXTranslation + (int) (buttonSize * 0.5), 0);
+    /**
+     * Get the part of the header the refresh animation draws in, in layout coordinates: as wide
+     * as the typewriter and the carriage at both ends of its travel, as high as the header.
+     */
+    void getContentBounds(Rect bounds) {
+        bounds.setEmpty();
+        bounds.union(layout(typewriter, 0, typewriterPadding));
+        bounds.union(layout(keyboard, 0, 0));
+        bounds.union(layout(space, 0, spaceTranslationY));
+        for (int side = -1; side <= 1; side += 2) {
+            final int carriageX = side * carriageOffset;
+            for (Drawable part : parts) {
+                bounds.union(layout(part, carriageX, 0));
+            }
+            // Letters are typed onto the page
+            bounds.union(layout(page, carriageX, 0));
+            bounds.union(layout(pageBack, pageOffset + carriageX, 0));
         }
+        bounds.set(Math.max(0, bounds.left), 0, Math.min(screenWidth, bounds.right),
+                parent.getTotalDragDistance());
     }
 
-    private void drawBottomLineKeys(int buttonSize) {
-        int buttonXTranslation = keyboard.getIntrinsicWidth();
-        for (int i = 0; i < BOTTOM_LINE_KEYS_NUMBER; i++) {
-            buttonXTranslation -= buttonSize * 3;
+    float getPercent() {
+        return percent;
+    }
 
-            if (i < SPACE_START_POSITION || i > SPACE_END_POSITION) {
-                final int keysBefore = TOP_LINE_KEYS_NUMBER + MIDDLE_LINE_KEYS_NUMBER;
-                draw(pressedKey - keysBefore == i ? buttonPressed : button,
-                        buttonXTranslation - (buttonSize), -(buttonSize * 3));
-            }
+    /**
+     * @return clock time the running animation started at
+     */
+    long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return whether the refresh animation, as opposed to the drag, is shown
+     */
+    boolean isAnimationStarted() {
+        return model.isStarted();
+    }
+
+    private void drawTypewriter() {
+        draw(typewriter, 0, typewriterPadding);
+    }
+
+    /**
+     * Blit the static layer and draw the pressed key, if any, on top of it.
+     */
+    private void drawKeyboard() {
+        final StaticLayerCache staticLayer = sharedDrawables.getStaticLayer();
+        if (!staticLayer.isValid(screenWidth, density)) {
+            buildStaticLayer(staticLayer);
+        }
+
+        final int pressedKey = quality >= TypewriterRefreshLayout.QUALITY_FROZEN_KEYS
+                ? TypewriterAnimationModel.EMPTY_KEY : frame.getPressedKey();
+        if (pressedKey == TypewriterAnimationModel.SPACE_KEY) {
+            pressedKeyHole.set(layout(space, 0, spaceTranslationY));
+            staticLayer.draw(canvas, pressedKeyHole);
+            draw(spacePressed, 0, spaceTranslationY);
+        } else if (pressedKey >= 0 && pressedKey < TOTAL_NUMBER_OF_KEY_SLOTS
+                && hasKey[pressedKey]) {
+            pressedKeyHole.set(layout(button, keyTranslationX[pressedKey],
+                    keyTranslationY[pressedKey]));
+            staticLayer.draw(canvas, pressedKeyHole);
+            draw(buttonPressed, keyTranslationX[pressedKey], keyTranslationY[pressedKey]);
+        } else {
+            staticLayer.draw(canvas, null);
         }
-        draw(pressedKey == SPACE_KEY ? spacePressed : space, 0, -(buttonSize * 3));
     }
 
     private void drawPage() {
@@ -386,19 +644,22 @@ class TypewriterRefreshDrawable extends BaseRefreshDrawable {
         if (percent >= 1f) {
             percent = 1f;
         }
-        if (!hasAnimationStarted && percent <= 1f) {
+        if (!frame.isTyping() && percent <= 1f) {
             pageOffsetY = ((int) ((page.getIntrinsicHeight()) / percent) + pageOffset);
-            if (hasPageAnimationStarted || carriageReturnAnimator.isRunning()) {
-                double offsetPercent = pagePercent * 1.15;
+            if (frame.isPageMoving()) {
+                double offsetPercent = frame.getPagePercent() * 1.15;
                 pageOffsetY *= (1 - offsetPercent);
             }
         } else {
-            page.setLevel((5000 + 2000 * pageRotateCycle));
-            pageOffsetY += pageOffset * pageRotateCycle;
+            pageOffsetY += pageOffset * frame.getLine();
         }
 
-        draw(page, carriageX, pageOffset + pageOffsetY);
-        drawText(pageOffsetY);
+        page.setLevel(frame.getPageLevel());
+        drawSprite(page, TypewriterDrawablePool.PAGE, frame.getCarriageX(),
+                pageOffset + pageOffsetY);
+        if (quality < TypewriterRefreshLayout.QUALITY_NO_TEXT) {
+            drawText(pageOffsetY);
+        }
     }
 
     private void drawPageBack() {
@@ -406,104 +667,85 @@ class TypewriterRefreshDrawable extends BaseRefreshDrawable {
             percent = 1f;
         }
         int pageBackOffsetY = pageOffset * 3;
-        if ((!hasAnimationStarted) && percent <= 1f) {
-            if (hasPageAnimationStarted || carriageReturnAnimator.isRunning()) {
-                double offsetPercent = pagePercent * 1.65;
+        if (!frame.isTyping() && percent <= 1f) {
+            if (frame.isPageMoving()) {
+                double offsetPercent = frame.getPagePercent() * 1.65;
                 pageBackOffsetY *= offsetPercent;
             }
         } else {
-            pageBack.setLevel((10000 - 3333 * pageRotateCycle));
-            pageBackOffsetY -= pageOffset * pageRotateCycle;
+            pageBackOffsetY -= pageOffset * frame.getLine();
         }
 
-        draw(pageBack, pageOffset + carriageX, pageOffset + pageBackOffsetY);
+        pageBack.setLevel(frame.getPageBackLevel());
+        draw(pageBack, pageOffset + frame.getCarriageX(), pageOffset + pageBackOffsetY);
     }
 
+    /**
+     * Draw the typed letters, one batched path per line.
+     */
     private void drawText(int offsetY) {
+        final TypedLetters typedLetters = frame.getLetters();
         int letterSize = letter.getIntrinsicHeight();
-        for (int j = 0; j <= pageRotateCycle; j++) {
-            int letterXTranslation = carriageX + page.getIntrinsicWidth() - letterSize * 2;
-            for (int i = 0; i < numberOfLettersOnString[j] - 1; i++) {
-                letterXTranslation -= letterOffset.get(j).size() <= i ? 0
-                        : letterOffset.get(j).get(i);
-                draw(letter, letterXTranslation,
-                        (pageOffset * 2) - (int) (letterSize * 3.5) * j + offsetY);
-            }
+        final int letterXTranslation = page.getIntrinsicWidth() - letterSize * 2;
+        final float lineX = screenWidth / 2 - frame.getCarriageX() / 2f;
+        for (int j = 0; j <= frame.getLine(); j++) {
+            final int letterYTranslation =
+                    (pageOffset * 2) - (int) (letterSize * 3.5) * j + offsetY;
+            letterPaths.draw(canvas, typedLetters, j, letterXTranslation, lineX,
+                    getCenterYWithTranslation(letterSize + letterYTranslation) + offset);
         }
     }
 
-    private void drawCarriage(boolean shouldTypeKey) {
-        int imaginaryOffset = -carriageOffset;
-        if (hasAnimationStarted) {
-            imaginaryOffset += carriageOffset * 2 * (currentStep / 16.6f);
-        }
-
-        if (shouldTypeKey) {
-            if (currentStep != FIRST_STEP) {
-                int motion = imaginaryOffset - carriageX;
-                if (pressedKey == SPACE_KEY) {
-                    numberOfLettersOnString[pageRotateCycle]--;
-                    motion *= 2;
-                }
-                letterOffset.get(pageRotateCycle).add(motion);
-            }
-            numberOfLettersOnString[pageRotateCycle]++;
-            carriageX = imaginaryOffset;
-        }
-
+    private void drawCarriage() {
+        final int carriageX = frame.getCarriageX();
         drawPageBack();
         for (int i = 0; i < parts.size() - 1; i++) {
-            draw(parts.get(i), carriageX, (int) (typewriter.getIntrinsicHeight() / 1.1));
+            drawSprite(parts.get(i), TypewriterDrawablePool.CARRIAGE_PART1 + i, carriageX,
+                    (int) (typewriter.getIntrinsicHeight() / 1.1));
         }
         Drawable lastPart = parts.get(parts.size() - 1);
         int bottomPartOffsetY = (int) (typewriter.getIntrinsicHeight() / 1.1) -
                 lastPart.getIntrinsicHeight() * 2;
 
         drawPage();
-        draw(lastPart, carriageX, bottomPartOffsetY);
+        drawSprite(lastPart, TypewriterDrawablePool.CARRIAGE_PART1 + parts.size() - 1, carriageX,
+                bottomPartOffsetY);
     }
 
     private void draw(Drawable drawable, int translationX,
             int translationY) {
+        layout(drawable, translationX, translationY);
+        drawable.draw(canvas);
+    }
+
+    /**
+     * Draw a drawable, or its sprite while the header is dragged.
+     *
+     * @param sprite drawable index of {@link TypewriterDrawablePool}
+     */
+    private void drawSprite(Drawable drawable, int sprite, int translationX, int translationY) {
+        layout(drawable, translationX, translationY);
+        if (dragSprites == null || !dragSprites.draw(canvas, sprite, drawable, percent)) {
+            drawable.draw(canvas);
+        }
+    }
+
+    private Rect layout(Drawable drawable, int translationX, int translationY) {
         int drawableX = getCenterXWithTranslation(drawable.getIntrinsicWidth() + translationX);
         int drawableY = getCenterYWithTranslation(drawable.getIntrinsicHeight() + translationY)
                 + offset;
         drawable.setBounds(drawableX, drawableY,
                 drawableX + drawable.getIntrinsicWidth(),
                 drawableY + drawable.getIntrinsicHeight());
-        drawable.draw(canvas);
-    }
-
-    private boolean shouldTypeKey() {
-        boolean isNewType = currentStep != lastType;
-        lastType = currentStep;
-        return hasAnimationStarted && isNewType;
-    }
-
-    private boolean shouldPressSpace() {
-        return pressedKey != SPACE_KEY && (Math.random() <= 0.15f);
-    }
-
-    private int getRandomKeyNumber() {
-        return (int) (Math.random() * TOTAL_NUMBER_OF_PHYSICAL_KEYS);
+        return drawable.getBounds();
     }
 
     private int getCenterXWithTranslation(int width) {
         //OX goes (+inf; -inf)
-        return canvas.getWidth() / 2 - width / 2;
+        return screenWidth / 2 - width / 2;
     }
 
     private int getCenterYWithTranslation(int height) {
         return parent.getTotalDragDistance() / 2 - height / 2;
     }
-
-    private void resetAnimation() {
-        pressedKey = EMPTY_KEY;
-        currentStep = FIRST_STEP;
-        pageRotateCycle = 0;
-        for (int i = 0; i < PAGE_CYCLE; i++) {
-            letterOffset.get(i).clear();
-            numberOfLettersOnString[i] = 0;
-        }
-    }
 }
@@ -1,24 +1,31 @@
 package com.github.ilyagh;
 
 import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.NestedScrollingChild;
+import android.support.v4.view.NestedScrollingChildHelper;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
+import android.view.VelocityTracker;
 import android.view.ViewGroup;
-import android.view.animation.Animation;
-import android.view.animation.DecelerateInterpolator;
-import android.view.animation.Interpolator;
-import android.view.animation.Transformation;
 import android.widget.AbsListView;
 import android.widget.ImageView;
+import com.github.ilyagh.typewriter.R;
 
 
 /**
@@ -46,30 +53,60 @@ import android.widget.ImageView;
  * provided to allow refresh of the content wherever this gesture is used.
  * <p>
  * Supported child views: RecyclerView, ListView, ScrollView, NestedScrollView etc.
+ * Children that support nested scrolling hand their overscroll to the layout directly.
  * </p>
  */
-public class TypewriterRefreshLayout extends ViewGroup {
+public class TypewriterRefreshLayout extends ViewGroup
+        implements NestedScrollingParent, NestedScrollingChild {
     private static final String EXTRA_SUPER_STATE = "EXTRA_SUPER_STATE";
     private static final String EXTRA_IS_REFRESHING = "EXTRA_IS_REFRESHING";
+
+    /**
+     * Quality that steps down through the levels below while frames miss their deadline and
+     * back up once they are within budget again. See {@link #setQuality(int)}.
+     */
+    public static final int QUALITY_ADAPTIVE = -1;
+    /**
+     * The whole animation.
+     */
+    public static final int QUALITY_FULL = 0;
+    /**
+     * No letters are typed onto the page.
+     */
+    public static final int QUALITY_NO_TEXT = 1;
+    /**
+     * In addition the keys are not pressed.
+     */
+    public static final int QUALITY_FROZEN_KEYS = 2;
+    /**
+     * In addition the carriage moves at half the step rate.
+     */
+    public static final int QUALITY_HALF_STEP_RATE = 3;
+    /**
+     * The typewriter stands still.
+     */
+    public static final int QUALITY_STATIC = 4;
+
+    /**
+     * While adaptive quality shows a static frame, frame pressure is still sampled this often.
+     */
+    private static final long STATIC_QUALITY_SAMPLE_INTERVAL_MS = 100;
     private static final int INVALID_POINTER_ID = -1;
 
-    private static final float DRAG_RATE = .85f;
-    private static final float DECELERATE_INTERPOLATION_FACTOR = 2.0f;
+    static final float DRAG_RATE = .85f;
 
-    private static final int MAX_OFFSET_ANIMATION_DURATION = 700;
     private static final int MAX_DRAG_DISTANCE = 140;
 
+    private static final int OFFSET_MOTION_NONE = 0;
+    private static final int OFFSET_MOTION_TO_START = 1;
+    private static final int OFFSET_MOTION_TO_CORRECT = 2;
+
     @Nullable
     private OnChildScrollUpCallback onChildScrollUpCallback;
 
     private int totalDragDistance;
     private int touchSlop;
 
-    private int targetPaddingTop;
-    private int targetPaddingBottom;
-    private int targetPaddingRight;
-    private int targetPaddingLeft;
-
     private int from;
     private int currentOffsetTop;
     private int activePointerId;
@@ -79,45 +116,61 @@ public class TypewriterRefreshLayout extends ViewGroup {
 
     private boolean isRefreshing;
     private boolean isBeingDragged;
+    private boolean isReturningToStart;
+    private boolean isPrewarmPending;
+
+    private final NestedScrollingParentHelper nestedScrollingParentHelper;
+    private final NestedScrollingChildHelper nestedScrollingChildHelper;
+    private final int[] parentScrollConsumed = new int[2];
+    private final int[] parentOffsetInWindow = new int[2];
+    private float totalUnconsumed;
+    private boolean nestedScrollInProgress;
+
+    /**
+     * Measure and layout passes of the target, counted for the gesture replay tests.
+     */
+    private int targetMeasureCount;
+    private int targetLayoutCount;
 
     private View target;
     private ImageView refreshView;
     private TypewriterRefreshDrawable refreshDrawable;
+    @Nullable
+    private Drawable headerBackground;
 
-    private final Interpolator decelerateInterpolator = new DecelerateInterpolator(DECELERATE_INTERPOLATION_FACTOR);
-    private final Animation animateToStartPosition = new Animation() {
-        @Override
-        protected void applyTransformation(float interpolatedTime, Transformation t) {
-            moveToStart(interpolatedTime);
-        }
-    };
-    private final Animation animateToCorrectPosition = new Animation() {
+    private final HeaderClock headerClock = new HeaderClock(new HeaderClock.Client() {
         @Override
-        protected void applyTransformation(float interpolatedTime, Transformation t) {
-            int targetTop;
-            int endTarget = totalDragDistance;
-            targetTop = (from + (int) ((endTarget - from) * interpolatedTime));
-            int offset = targetTop - target.getTop();
-
-            currentDragPercent = fromDragPercent - (fromDragPercent - 1.0f) * interpolatedTime;
-            refreshDrawable.setPercent(currentDragPercent, false);
-
-            if (refreshDrawable.isSkipAnimation()) {
-                refreshDrawable.setOffsetTopAndBottom(0);
-                currentOffsetTop = target.getTop();
-            } else {
-                setTargetOffsetTop(offset, false);
-            }
-        }
-    };
-    private final Animation.AnimationListener mToStartListener = new SimpleAnimationListener() {
-        @Override
-        public void onAnimationEnd(Animation animation) {
-            refreshDrawable.stop();
-            currentOffsetTop = target.getTop();
+        public long onFrame(long time) {
+            final long next = onHeaderFrame(time);
+            updateFrameRateVote();
+            return next;
         }
-    };
+    });
+    private final SpringMotion offsetSpring = new SpringMotion(SpringMotion.STIFFNESS_LOW,
+            SpringMotion.DAMPING_RATIO_NO_BOUNCY);
+    private int offsetMotion = OFFSET_MOTION_NONE;
+    private float releaseVelocity;
+    @Nullable
+    private VelocityTracker velocityTracker;
     private OnRefreshListener mOnRefreshListener;
+    @Nullable
+    private OnFrameMetricsListener onFrameMetricsListener;
+    @Nullable
+    private RefreshFrameMetrics frameMetrics;
+    private final AdaptiveQuality adaptiveQuality = new AdaptiveQuality();
+    private boolean isAdaptiveQuality;
+    /**
+     * Level set or picked by adaptive quality, before {@link #motionPolicy} is applied.
+     */
+    private int requestedQuality = QUALITY_FULL;
+    private int quality = QUALITY_FULL;
+    private final MotionPolicy motionPolicy;
+    private boolean isFollowingMotionSettings = true;
+    private final FrameRateVote frameRateVote;
+    private boolean isFrameRateVoting = true;
+    private boolean isTouching;
+    @Nullable
+    private OnQualityChangeListener onQualityChangeListener;
 
     /**
      * Simple constructor to use when creating a {@link TypewriterRefreshLayout} from code.
@@ -147,84 +200,151 @@ public class TypewriterRefreshLayout extends ViewGroup {
         totalDragDistance = Utils.convertDpToPixel(context, MAX_DRAG_DISTANCE);
         refreshDrawable = new TypewriterRefreshDrawable(this);
 
+        final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.TypewriterRefreshLayout);
+        Drawable background = a.getDrawable(R.styleable.TypewriterRefreshLayout_ptr_background);
+        if (background == null && a.hasValue(R.styleable.TypewriterRefreshLayout_ptr_backgroundColor)) {
+            background = new ColorDrawable(a.getColor(R.styleable.TypewriterRefreshLayout_ptr_backgroundColor, 0));
+        }
+        a.recycle();
+        setHeaderBackground(background);
+
         refreshView.setImageDrawable(refreshDrawable);
+        frameRateVote = new FrameRateVote(refreshView);
 
         addView(refreshView);
         setWillNotDraw(false);
         ViewCompat.setChildrenDrawingOrderEnabled(this, true);
+
+        nestedScrollingParentHelper = new NestedScrollingParentHelper(this);
+        nestedScrollingChildHelper = new NestedScrollingChildHelper(this);
+        setNestedScrollingEnabled(true);
+
+        motionPolicy = new MotionPolicy(context, new MotionPolicy.Listener() {
+            @Override
+            public void onMotionPolicyChanged() {
+                updateQuality();
+            }
+        });
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        View targetView = getTargetView();
-        if (targetView != null) {
-            widthMeasureSpec = MeasureSpec.makeMeasureSpec(getMeasuredWidth() - getPaddingLeft() - getPaddingRight(), MeasureSpec.EXACTLY);
-            heightMeasureSpec = MeasureSpec.makeMeasureSpec(getMeasuredHeight() - getPaddingBottom() - getPaddingTop(), MeasureSpec.EXACTLY);
+        TypewriterTrace.beginSection(TypewriterTrace.MEASURE);
+        try {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            View targetView = getTargetView();
+            if (targetView != null) {
+                widthMeasureSpec = MeasureSpec.makeMeasureSpec(getMeasuredWidth() - getPaddingLeft() - getPaddingRight(), MeasureSpec.EXACTLY);
+                heightMeasureSpec = MeasureSpec.makeMeasureSpec(getMeasuredHeight() - getPaddingBottom() - getPaddingTop(), MeasureSpec.EXACTLY);
 
-            targetView.measure(widthMeasureSpec, heightMeasureSpec);
-            refreshView.measure(widthMeasureSpec, heightMeasureSpec);
+                targetView.measure(widthMeasureSpec, heightMeasureSpec);
+                targetMeasureCount++;
+                refreshView.measure(widthMeasureSpec, heightMeasureSpec);
+            }
+        } finally {
+            TypewriterTrace.endSection();
         }
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        View targetView = getTargetView();
-        if (targetView != null) {
-            int height = getMeasuredHeight();
-            int width = getMeasuredWidth();
-            int left = getPaddingLeft();
-            int top = getPaddingTop();
-            int right = getPaddingRight();
-            int bottom = getPaddingBottom();
+        TypewriterTrace.beginSection(TypewriterTrace.LAYOUT);
+        try {
+            View targetView = getTargetView();
+            if (targetView != null) {
+                int height = getMeasuredHeight();
+                int width = getMeasuredWidth();
+                int left = getPaddingLeft();
+                int top = getPaddingTop();
+                int right = getPaddingRight();
+                int bottom = getPaddingBottom();
 
-            targetView.layout(left, top + currentOffsetTop, left + width - right, top + height - bottom + currentOffsetTop);
-            refreshView.layout(left, top, left + width - right, top + height - bottom);
+                targetView.layout(left, top + currentOffsetTop, left + width - right, top + height - bottom + currentOffsetTop);
+                targetLayoutCount++;
+                refreshView.layout(left, top, left + width - right, top + height - bottom);
+                refreshDrawable.init();
+                if (isPrewarmPending) {
+                    isPrewarmPending = false;
+                    refreshDrawable.prewarm(getWidth());
+                }
+            }
+        } finally {
+            TypewriterTrace.endSection();
         }
     }
 
     @Override
-    public boolean onInterceptTouchEvent(MotionEvent motionEvent) {
-        if (!isEnabled() || canChildScrollUp() || isRefreshing) {
-            return false;
-        }
-
+    public boolean dispatchTouchEvent(MotionEvent motionEvent) {
         switch (MotionEventCompat.getActionMasked(motionEvent)) {
             case MotionEvent.ACTION_DOWN:
-                setTargetOffsetTop(0, true);
-                activePointerId = motionEvent.getPointerId(0);
-                isBeingDragged = false;
-                final float initialMotionY = getMotionEventY(motionEvent, activePointerId);
-                if (initialMotionY == -1f) {
-                    return false;
-                }
-                this.initialMotionY = initialMotionY;
-                break;
-            case MotionEvent.ACTION_MOVE:
-                if (activePointerId == INVALID_POINTER_ID) {
-                    return false;
-                }
-
-                final float y = getMotionEventY(motionEvent, activePointerId);
-                if (y == -1f) {
-                    return false;
-                }
-                final float yDiff = y - this.initialMotionY;
-                if (yDiff > touchSlop && !isBeingDragged) {
-                    isBeingDragged = true;
-                }
+                isTouching = true;
+                updateFrameRateVote();
                 break;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-                isBeingDragged = false;
-                activePointerId = INVALID_POINTER_ID;
-                break;
-            case MotionEvent.ACTION_POINTER_UP:
-                onSecondaryPointerUp(motionEvent);
+                isTouching = false;
+                updateFrameRateVote();
                 break;
         }
+        return super.dispatchTouchEvent(motionEvent);
+    }
 
-        return isBeingDragged;
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent motionEvent) {
+        TypewriterTrace.beginSection(TypewriterTrace.INTERCEPT_TOUCH);
+        try {
+            if (!isEnabled() || isRefreshing || nestedScrollInProgress || canChildScrollUp()) {
+                return false;
+            }
+
+            switch (MotionEventCompat.getActionMasked(motionEvent)) {
+                case MotionEvent.ACTION_DOWN:
+                    setTargetOffsetTop(0, true);
+                    activePointerId = motionEvent.getPointerId(0);
+                    isBeingDragged = false;
+                    final float initialMotionY = getMotionEventY(motionEvent, activePointerId);
+                    if (initialMotionY == -1f) {
+                        return false;
+                    }
+                    this.initialMotionY = initialMotionY;
+                    refreshDrawable.requestInit();
+                    trackVelocity(motionEvent, true);
+                    if (isReturningToStart) {
+                        // Catch the header where it is and continue dragging it from there
+                        catchOffsetMotion();
+                        this.initialMotionY -= currentOffsetTop / DRAG_RATE;
+                        isBeingDragged = currentOffsetTop > 0;
+                    }
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    if (activePointerId == INVALID_POINTER_ID) {
+                        return false;
+                    }
+
+                    final float y = getMotionEventY(motionEvent, activePointerId);
+                    if (y == -1f) {
+                        return false;
+                    }
+                    trackVelocity(motionEvent, false);
+                    final float yDiff = y - this.initialMotionY;
+                    if (yDiff > touchSlop && !isBeingDragged) {
+                        isBeingDragged = true;
+                    }
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
+                    isBeingDragged = false;
+                    activePointerId = INVALID_POINTER_ID;
+                    break;
+                case MotionEvent.ACTION_POINTER_UP:
+                    onSecondaryPointerUp(motionEvent);
+                    break;
+            }
+
+            return isBeingDragged;
+        } finally {
+            TypewriterTrace.endSection();
+        }
     }
 
     @Override
@@ -270,58 +390,226 @@ public class TypewriterRefreshLayout extends ViewGroup {
 
     @Override
     public boolean onTouchEvent(@NonNull MotionEvent motionEvent) {
-        if (!isBeingDragged) {
-            return super.onTouchEvent(motionEvent);
-        }
+        TypewriterTrace.beginSection(TypewriterTrace.TOUCH);
+        try {
+            if (!isBeingDragged || nestedScrollInProgress) {
+                return super.onTouchEvent(motionEvent);
+            }
 
-        switch (MotionEventCompat.getActionMasked(motionEvent)) {
-            case MotionEvent.ACTION_MOVE: {
-                final int pointerIndex = motionEvent.findPointerIndex(activePointerId);
-                if (pointerIndex != 0) {
-                    return false;
+            trackVelocity(motionEvent, false);
+            switch (MotionEventCompat.getActionMasked(motionEvent)) {
+                case MotionEvent.ACTION_MOVE: {
+                    final int pointerIndex = motionEvent.findPointerIndex(activePointerId);
+                    if (pointerIndex != 0) {
+                        return false;
+                    }
+                    final float y = motionEvent.getY(pointerIndex);
+                    final float yDiff = y - initialMotionY;
+                    final float scrollTop = yDiff * DRAG_RATE;
+                    currentDragPercent = scrollTop / totalDragDistance;
+                    if (currentDragPercent < 0) {
+                        return false;
+                    }
+                    moveSpinner(scrollTop);
+                    break;
                 }
-                final float x = motionEvent.getX(pointerIndex);
-                final float y = motionEvent.getY(pointerIndex);
-                final float yDiff = y - initialMotionY;
-                final float scrollTop = yDiff * DRAG_RATE;
-                currentDragPercent = scrollTop / totalDragDistance;
-                if (currentDragPercent < 0) {
+                case MotionEventCompat.ACTION_POINTER_DOWN:
+                    activePointerId = motionEvent.getPointerId(MotionEventCompat.getActionIndex(motionEvent));
+                    break;
+                case MotionEvent.ACTION_POINTER_UP:
+                    onSecondaryPointerUp(motionEvent);
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL: {
+                    if (activePointerId == INVALID_POINTER_ID) {
+                        return false;
+                    }
+                    final float y = motionEvent.getY(motionEvent.findPointerIndex(activePointerId));
+                    final float overScrollTop = (y - initialMotionY) * DRAG_RATE;
+                    isBeingDragged = false;
+                    if (velocityTracker != null) {
+                        velocityTracker.computeCurrentVelocity(1000);
+                        setReleaseVelocity(velocityTracker.getYVelocity(activePointerId));
+                    }
+                    finishSpinner(overScrollTop);
+                    activePointerId = INVALID_POINTER_ID;
                     return false;
                 }
-                float boundedDragPercent = Math.min(1f, Math.abs(currentDragPercent));
-                float slingshotDist = totalDragDistance;
-                int targetY = (int) ((slingshotDist * boundedDragPercent));
-
-                refreshDrawable.setPercent(currentDragPercent, true);
-                setTargetOffsetTop(targetY - currentOffsetTop, true);
-                break;
             }
-            case MotionEventCompat.ACTION_POINTER_DOWN:
-                activePointerId = motionEvent.getPointerId(MotionEventCompat.getActionIndex(motionEvent));
-                break;
-            case MotionEvent.ACTION_POINTER_UP:
-                onSecondaryPointerUp(motionEvent);
-                break;
-            case MotionEvent.ACTION_UP:
-            case MotionEvent.ACTION_CANCEL: {
-                if (activePointerId == INVALID_POINTER_ID) {
-                    return false;
-                }
-                final float y = motionEvent.getY(motionEvent.findPointerIndex(activePointerId));
-                final float overScrollTop = (y - initialMotionY) * DRAG_RATE;
-                isBeingDragged = false;
-                if (overScrollTop > totalDragDistance) {
-                    setRefreshing(true, true);
-                } else {
-                    isRefreshing = false;
-                    animateOffsetToStartPosition();
-                }
-                activePointerId = INVALID_POINTER_ID;
-                return false;
+
+            return true;
+        } finally {
+            TypewriterTrace.endSection();
+        }
+    }
+
+    private void trackVelocity(MotionEvent motionEvent, boolean isFirst) {
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        } else if (isFirst) {
+            velocityTracker.clear();
+        }
+        velocityTracker.addMovement(motionEvent);
+    }
+
+    /**
+     * @param dragVelocity velocity of the finger or of the nested fling pulling the header down,
+     *                     in pixels per second
+     */
+    private void setReleaseVelocity(float dragVelocity) {
+        // Past the drag distance the header stays put while the finger moves
+        releaseVelocity = currentOffsetTop < totalDragDistance ? dragVelocity * DRAG_RATE : 0f;
+    }
+
+    private void moveSpinner(float overScrollTop) {
+        currentDragPercent = overScrollTop / totalDragDistance;
+        float boundedDragPercent = Math.min(1f, Math.abs(currentDragPercent));
+        int targetY = (int) (totalDragDistance * boundedDragPercent);
+
+        refreshDrawable.setPercent(currentDragPercent, true);
+        setTargetOffsetTop(targetY - currentOffsetTop, true);
+    }
+
+    private void finishSpinner(float overScrollTop) {
+        if (overScrollTop > totalDragDistance) {
+            setRefreshing(true, true);
+        } else {
+            isRefreshing = false;
+            animateOffsetToStartPosition();
+        }
+    }
+
+    // NestedScrollingParent
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return isEnabled() && !isRefreshing && !isReturningToStart
+                && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        nestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes);
+        startNestedScroll(axes & ViewCompat.SCROLL_AXIS_VERTICAL);
+        totalUnconsumed = 0;
+        nestedScrollInProgress = true;
+        refreshDrawable.requestInit();
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        // Scrolling back up while the header is pulled down hides the header first
+        if (dy > 0 && totalUnconsumed > 0) {
+            if (dy > totalUnconsumed) {
+                consumed[1] = (int) totalUnconsumed;
+                totalUnconsumed = 0;
+            } else {
+                totalUnconsumed -= dy;
+                consumed[1] = dy;
             }
+            moveSpinner(totalUnconsumed * DRAG_RATE);
+        }
+
+        final int[] parentConsumed = parentScrollConsumed;
+        if (dispatchNestedPreScroll(dx - consumed[0], dy - consumed[1], parentConsumed, null)) {
+            consumed[0] += parentConsumed[0];
+            consumed[1] += parentConsumed[1];
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed,
+                               int dxUnconsumed, int dyUnconsumed) {
+        // Let the parent scroll first, then pull the header with whatever is left. Unconsumed
+        // upward scroll already means the child is at its top, so there is nothing to poll.
+        dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed,
+                parentOffsetInWindow);
+        final int dy = dyUnconsumed + parentOffsetInWindow[1];
+        if (dy < 0) {
+            totalUnconsumed += Math.abs(dy);
+            moveSpinner(totalUnconsumed * DRAG_RATE);
+        }
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        nestedScrollingParentHelper.onStopNestedScroll(target);
+        nestedScrollInProgress = false;
+        if (totalUnconsumed > 0) {
+            finishSpinner(totalUnconsumed * DRAG_RATE);
+            totalUnconsumed = 0;
         }
+        stopNestedScroll();
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        // While the header is pulled the fling belongs to it, not to the list
+        if (totalUnconsumed > 0) {
+            setReleaseVelocity(-velocityY);
+            return true;
+        }
+        return dispatchNestedPreFling(velocityX, velocityY);
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        return dispatchNestedFling(velocityX, velocityY, consumed);
+    }
 
-        return true;
+    @Override
+    public int getNestedScrollAxes() {
+        return nestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    // NestedScrollingChild
+
+    @Override
+    public void setNestedScrollingEnabled(boolean enabled) {
+        nestedScrollingChildHelper.setNestedScrollingEnabled(enabled);
+    }
+
+    @Override
+    public boolean isNestedScrollingEnabled() {
+        return nestedScrollingChildHelper.isNestedScrollingEnabled();
+    }
+
+    @Override
+    public boolean startNestedScroll(int axes) {
+        return nestedScrollingChildHelper.startNestedScroll(axes);
+    }
+
+    @Override
+    public void stopNestedScroll() {
+        nestedScrollingChildHelper.stopNestedScroll();
+    }
+
+    @Override
+    public boolean hasNestedScrollingParent() {
+        return nestedScrollingChildHelper.hasNestedScrollingParent();
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed,
+                                        int dyUnconsumed, int[] offsetInWindow) {
+        return nestedScrollingChildHelper.dispatchNestedScroll(dxConsumed, dyConsumed,
+                dxUnconsumed, dyUnconsumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+        return nestedScrollingChildHelper.dispatchNestedPreScroll(dx, dy, consumed,
+                offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedFling(float velocityX, float velocityY, boolean consumed) {
+        return nestedScrollingChildHelper.dispatchNestedFling(velocityX, velocityY, consumed);
+    }
+
+    @Override
+    public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+        return nestedScrollingChildHelper.dispatchNestedPreFling(velocityX, velocityY);
     }
 
     /**
@@ -346,6 +634,21 @@ public class TypewriterRefreshLayout extends ViewGroup {
         }
     }
 
+    int getTargetMeasureCount() {
+        return targetMeasureCount;
+    }
+
+    int getTargetLayoutCount() {
+        return targetLayoutCount;
+    }
+
+    /**
+     * @return number of times the refresh drawable has asked to be redrawn
+     */
+    int getHeaderInvalidationCount() {
+        return refreshDrawable.getInvalidationCount();
+    }
+
     /**
      * @return max drag distance in pixels
      */
@@ -377,18 +680,22 @@ public class TypewriterRefreshLayout extends ViewGroup {
 
             isRefreshing = refreshing;
             if (isRefreshing) {
+                refreshDrawable.requestInit();
                 refreshDrawable.setPercent(1f, true);
                 from = currentOffsetTop;
                 fromDragPercent = currentDragPercent;
 
-                animateToCorrectPosition.reset();
-                animateToCorrectPosition.setDuration(MAX_OFFSET_ANIMATION_DURATION);
-                animateToCorrectPosition.setInterpolator(decelerateInterpolator);
-
-                refreshView.clearAnimation();
-                refreshView.startAnimation(animateToCorrectPosition);
+                startOffsetMotion(OFFSET_MOTION_TO_CORRECT, totalDragDistance);
 
                 if (isRefreshing) {
+                    if (frameMetrics != null) {
+                        frameMetrics.recordRefreshTrigger(System.nanoTime());
+                    }
+                    if (isAdaptiveQuality) {
+                        // A slow stretch of an earlier refresh says nothing about this one
+                        adaptiveQuality.reset();
+                        applyQuality(adaptiveQuality.getQuality());
+                    }
                     refreshDrawable.start();
                     if (notify && null != mOnRefreshListener) {
                         mOnRefreshListener.onRefresh();
@@ -399,7 +706,6 @@ public class TypewriterRefreshLayout extends ViewGroup {
                 }
 
                 currentOffsetTop = target.getTop();
-                target.setPadding(targetPaddingLeft, targetPaddingTop, targetPaddingRight, targetPaddingBottom);
             } else {
                 animateOffsetToStartPosition();
             }
@@ -413,10 +719,6 @@ public class TypewriterRefreshLayout extends ViewGroup {
                 View child = getChildAt(i);
                 if (child != refreshView) {
                     target = child;
-                    targetPaddingBottom = target.getPaddingBottom();
-                    targetPaddingLeft = target.getPaddingLeft();
-                    targetPaddingRight = target.getPaddingRight();
-                    targetPaddingTop = target.getPaddingTop();
                 }
             }
         }
@@ -424,30 +726,121 @@ public class TypewriterRefreshLayout extends ViewGroup {
     }
 
     private void animateOffsetToStartPosition() {
+        isReturningToStart = true;
         fromDragPercent = currentDragPercent;
         from = currentOffsetTop;
-        long animationDuration = Math.abs((long) (MAX_OFFSET_ANIMATION_DURATION * fromDragPercent));
+        startOffsetMotion(OFFSET_MOTION_TO_START, 0);
+    }
 
-        animateToStartPosition.reset();
-        animateToStartPosition.setDuration(animationDuration);
-        animateToStartPosition.setInterpolator(decelerateInterpolator);
-        animateToStartPosition.setAnimationListener(mToStartListener);
-        refreshView.clearAnimation();
-        refreshView.startAnimation(animateToStartPosition);
+    /**
+     * Spring the header to the given offset. A motion already running is retargeted, so the
+     * header keeps its current velocity instead of starting over.
+     */
+    private void startOffsetMotion(int motion, int targetOffset) {
+        offsetMotion = motion;
+        if (offsetSpring.isRunning()) {
+            offsetSpring.setTarget(targetOffset);
+        } else {
+            offsetSpring.start(currentOffsetTop, releaseVelocity, targetOffset, headerClock.now());
+        }
+        releaseVelocity = 0f;
+        headerClock.requestFrame();
     }
 
-    private void moveToStart(float interpolatedTime) {
-        int targetTop = from - (int) (from * interpolatedTime);
+    /**
+     * Stop the return motion where it is, so that the header can be dragged again.
+     */
+    private void catchOffsetMotion() {
+        offsetSpring.cancel();
+        offsetMotion = OFFSET_MOTION_NONE;
+        isReturningToStart = false;
+        currentDragPercent = currentOffsetTop / (float) totalDragDistance;
+        refreshDrawable.stop();
+        refreshDrawable.setPercent(currentDragPercent, false);
+        refreshDrawable.setOffsetTopAndBottom(currentOffsetTop - getTotalDragDistance());
+    }
 
-        currentDragPercent = fromDragPercent * (1.0f - interpolatedTime);
-        refreshDrawable.setPercent(currentDragPercent, true);
-        target.setPadding(targetPaddingLeft, targetPaddingTop, targetPaddingRight, targetPaddingBottom + targetTop);
+    /**
+     * Advance the offset motion and the typewriter animation together, once per frame.
+     */
+    private long onHeaderFrame(long time) {
+        final boolean isSamplingQuality = isAdaptiveQuality && refreshDrawable.isAnimationStarted();
+        if (isSamplingQuality) {
+            adaptiveQuality.onFrame(headerClock.getFrameLateness());
+            applyQuality(adaptiveQuality.getQuality());
+        }
+        long next = refreshDrawable.onFrame(time);
+        if (isSamplingQuality && quality == QUALITY_STATIC) {
+            // Nothing changes on screen, but only further frames can tell when to step back up
+            next = Math.min(next, time + STATIC_QUALITY_SAMPLE_INTERVAL_MS);
+        }
+        if (offsetMotion == OFFSET_MOTION_NONE) {
+            return next;
+        }
 
+        final boolean isMoving = offsetSpring.update(time);
+        final float distance = offsetSpring.getTarget() - from;
+        final float progress = distance == 0f ? 1f
+                : Math.max(0f, Math.min(1f, (offsetSpring.getValue() - from) / distance));
+        if (offsetMotion == OFFSET_MOTION_TO_START) {
+            moveToStart(progress);
+        } else {
+            moveToCorrectPosition(progress);
+        }
+        if (isMoving) {
+            return time;
+        }
+
+        final int finishedMotion = offsetMotion;
+        offsetMotion = OFFSET_MOTION_NONE;
+        if (finishedMotion == OFFSET_MOTION_TO_START) {
+            onMovedToStart();
+            return HeaderClock.NO_FRAME;
+        }
+        return next;
+    }
+
+    /**
+     * @param progress how far the header has moved from where the motion started, from 0 to 1
+     */
+    private void moveToStart(float progress) {
+        int targetTop = from - (int) (from * progress);
+
+        currentDragPercent = fromDragPercent * (1.0f - progress);
+        refreshDrawable.setPercent(currentDragPercent, false);
         target.offsetTopAndBottom(targetTop - target.getTop());
-        refreshDrawable.setOffsetTopAndBottom((int) (-getTotalDragDistance() * interpolatedTime));
+        refreshDrawable.setOffsetTopAndBottom((int) (-getTotalDragDistance() * progress));
         currentOffsetTop = target.getTop();
     }
 
+    private void moveToCorrectPosition(float progress) {
+        int targetTop;
+        int endTarget = totalDragDistance;
+        targetTop = (from + (int) ((endTarget - from) * progress));
+        int offset = targetTop - target.getTop();
+
+        currentDragPercent = fromDragPercent - (fromDragPercent - 1.0f) * progress;
+        refreshDrawable.setPercent(currentDragPercent, false);
+
+        if (refreshDrawable.isSkipAnimation()) {
+            refreshDrawable.setOffsetTopAndBottom(0);
+            currentOffsetTop = target.getTop();
+        } else {
+            setTargetOffsetTop(offset, false);
+        }
+    }
+
+    private void onMovedToStart() {
+        isReturningToStart = false;
+        refreshDrawable.stop();
+        currentOffsetTop = target.getTop();
+        dispatchFrameMetrics();
+    }
+
+    /**
+     * The target is only ever moved with {@link View#offsetTopAndBottom(int)}, never through
+     * its padding, so moving it neither measures nor lays it out.
+     */
     private void setTargetOffsetTop(int offset, boolean requiresUpdate) {
         target.offsetTopAndBottom(offset);
         refreshDrawable.offsetTopAndBottom(offset);
@@ -464,6 +857,304 @@ public class TypewriterRefreshLayout extends ViewGroup {
         mOnRefreshListener = onRefreshListener;
     }
 
+    /**
+     * Hint that the refresh header is likely to be shown soon, e.g. from an idle handler once the
+     * screen has settled. Otherwise its drawables are only loaded on the first touch that could
+     * start a pull or on the first {@link #setRefreshing(boolean)}, to keep them out of inflation.
+     */
+    public void warmUp() {
+        refreshDrawable.requestInit();
+    }
+
+    /**
+     * Load the refresh header and render its cached layers on a background thread, so that the
+     * first pull neither inflates nor rasterises them. If the layout has not been measured yet
+     * this starts after its first layout. Layouts of the same width share the result, so calling
+     * it for one of them is enough. A result no layout has used yet is dropped when the system
+     * asks the app to trim its memory.
+     */
+    public void prewarm() {
+        if (getWidth() > 0) {
+            refreshDrawable.prewarm(getWidth());
+        } else {
+            isPrewarmPending = true;
+        }
+    }
+
+    /**
+     * Play the refresh animation back from a sprite sheet baked in the background, instead of
+     * drawing the typewriter on every frame. This trades a bounded amount of memory, at most
+     * 16MB, for almost no per-frame work, e.g. on low-end devices; with a large header the sheet
+     * is baked at a lower resolution to stay within that. Call it before the header is shown.
+     *
+     * @param enabled Whether to use a sprite sheet. Disabled by default.
+     */
+    public void setSpriteSheetEnabled(boolean enabled) {
+        if (enabled == refreshDrawable instanceof SpriteSheetRefreshDrawable) {
+            return;
+        }
+        final TypewriterRefreshDrawable previous = refreshDrawable;
+        previous.stop();
+        previous.release();
+
+        refreshDrawable = enabled ? new SpriteSheetRefreshDrawable(this)
+                : new TypewriterRefreshDrawable(this);
+        refreshDrawable.setSeed(previous.getSeed());
+        refreshDrawable.setFrameMetrics(frameMetrics);
+        refreshDrawable.setHeaderBackground(headerBackground);
+        refreshDrawable.setQuality(quality);
+        refreshView.setImageDrawable(refreshDrawable);
+        if (previous.isInitRequested()) {
+            refreshDrawable.requestInit();
+        }
+    }
+
+    /**
+     * Set the background drawn behind the typewriter, same as the {@code ptr_background}
+     * attribute. It fills the part of the header revealed by the pull. With an opaque background
+     * the header reports itself opaque over that part, whose bounds it follows, so what lies
+     * behind it there need not be drawn. Prefer it to a background of the layout itself, which
+     * is drawn under the whole content.
+     *
+     * @param background Background of the refresh header, or null for none.
+     */
+    public void setHeaderBackground(@Nullable Drawable background) {
+        headerBackground = background;
+        refreshDrawable.setHeaderBackground(background);
+    }
+
+    /**
+     * Set a solid color drawn behind the typewriter, same as the {@code ptr_backgroundColor}
+     * attribute.
+     *
+     * @param color Color of the refresh header background.
+     */
+    public void setHeaderBackgroundColor(@ColorInt int color) {
+        setHeaderBackground(new ColorDrawable(color));
+    }
+
+    /**
+     * Emit Systrace / Perfetto sections for the touch handling, measure, layout, setup and
+     * drawing of the refresh header, and counter tracks of its animation on API 29 and above.
+     * Tracing is off by default and costs next to nothing while off. Applies to every
+     * {@link TypewriterRefreshLayout}. Release builds of the library have tracing compiled out
+     * and ignore this, build the library with {@code -PtypewriterTracing} to trace them.
+     *
+     * @param enabled Whether to trace.
+     */
+    public static void setTracingEnabled(boolean enabled) {
+        TypewriterTrace.setEnabled(enabled);
+    }
+
+    /**
+     * Set the seed the refresh animation picks typed keys with. With a fixed seed the animation
+     * produces the same frames every time, e.g. for screenshot tests.
+     *
+     * @param seed Seed of the key choice.
+     */
+    public void setAnimationSeed(long seed) {
+        refreshDrawable.setSeed(seed);
+    }
+
+    /**
+     * Set how much of the refresh animation is drawn. {@link #QUALITY_ADAPTIVE} lets the layout
+     * step down through the levels on its own while the UI thread misses frame deadlines, e.g.
+     * during a heavy bind of the list being refreshed, and back up once frames are within budget
+     * again. Every refresh starts again from {@link #QUALITY_FULL}. Any other level is kept until
+     * changed. Defaults to {@link #QUALITY_FULL}.
+     * <p>
+     * Battery saver and turned off animations lower the quality further, see
+     * {@link #setFollowsSystemMotionSettings(boolean)}.
+     * </p>
+     *
+     * @param quality {@link #QUALITY_ADAPTIVE}, {@link #QUALITY_FULL}, {@link #QUALITY_NO_TEXT},
+     *                {@link #QUALITY_FROZEN_KEYS}, {@link #QUALITY_HALF_STEP_RATE} or
+     *                {@link #QUALITY_STATIC}.
+     */
+    public void setQuality(int quality) {
+        if (quality < QUALITY_ADAPTIVE || quality > QUALITY_STATIC) {
+            throw new IllegalArgumentException("Unknown quality " + quality);
+        }
+        isAdaptiveQuality = quality == QUALITY_ADAPTIVE;
+        if (isAdaptiveQuality) {
+            adaptiveQuality.reset();
+            applyQuality(adaptiveQuality.getQuality());
+        } else {
+            applyQuality(quality);
+        }
+    }
+
+    /**
+     * @return Quality level the refresh animation is drawn at, never {@link #QUALITY_ADAPTIVE}.
+     * Includes the effect of the system motion settings.
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * Set a listener to be notified when the quality level of the refresh animation changes.
+     *
+     * @param listener Listener to notify, or null to stop notifying.
+     */
+    public void setOnQualityChangeListener(@Nullable OnQualityChangeListener listener) {
+        onQualityChangeListener = listener;
+    }
+
+    /**
+     * Set whether the refresh animation gets cheaper while battery saver is on, where only the
+     * carriage moves at half the step rate, and stands still while animations are turned off in
+     * the system settings. Changes of the settings apply right away, also during a refresh. On
+     * by default.
+     *
+     * @param follow Whether to follow the system settings.
+     */
+    public void setFollowsSystemMotionSettings(boolean follow) {
+        isFollowingMotionSettings = follow;
+        if (follow && ViewCompat.isAttachedToWindow(this) && !isInEditMode()) {
+            motionPolicy.register();
+        } else {
+            motionPolicy.unregister();
+        }
+        updateQuality();
+    }
+
+    /**
+     * Set whether the layout asks the display for a lower frame rate while the refresh animation
+     * is all that moves. The typewriter changes only a few times a second, so there is no need
+     * to render it at the top rate of a 120Hz display. Full rate is back as soon as the layout
+     * is touched. Takes effect on Android 15 and above only. On by default.
+     *
+     * @param enabled Whether to vote for a lower frame rate.
+     */
+    public void setFrameRateVotingEnabled(boolean enabled) {
+        isFrameRateVoting = enabled;
+        updateFrameRateVote();
+    }
+
+    private void updateFrameRateVote() {
+        frameRateVote.setLow(isFrameRateVoting && isRefreshing && !isTouching
+                && offsetMotion == OFFSET_MOTION_NONE && refreshDrawable.isAnimationStarted());
+    }
+
+    private void applyQuality(int quality) {
+        requestedQuality = quality;
+        updateQuality();
+    }
+
+    private void updateQuality() {
+        final int quality = isFollowingMotionSettings
+                ? Math.max(requestedQuality, motionPolicy.getMinQuality()) : requestedQuality;
+        if (quality == this.quality) {
+            return;
+        }
+        final boolean wasStatic = this.quality == QUALITY_STATIC;
+        this.quality = quality;
+        refreshDrawable.setQuality(quality);
+        if (wasStatic) {
+            // Catch the animation up with the time it stood still
+            headerClock.requestFrame();
+        }
+        if (onQualityChangeListener != null) {
+            onQualityChangeListener.onQualityChanged(this, quality);
+        }
+    }
+
+    /**
+     * Set a listener to receive draw timing of the refresh header. Metrics are collected only
+     * while a listener is set and are delivered every time the header is hidden again.
+     *
+     * @param listener Listener to deliver metrics to, or null to stop collecting them.
+     */
+    public void setOnFrameMetricsListener(@Nullable OnFrameMetricsListener listener) {
+        onFrameMetricsListener = listener;
+        if (listener == null) {
+            frameMetrics = null;
+        } else if (frameMetrics == null) {
+            frameMetrics = new RefreshFrameMetrics();
+            updateFrameBudget();
+        }
+        refreshDrawable.setFrameMetrics(frameMetrics);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateFrameBudget();
+        if (isFollowingMotionSettings && !isInEditMode()) {
+            motionPolicy.register();
+        }
+        refreshDrawable.init();
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        headerClock.pause();
+        motionPolicy.unregister();
+        isTouching = false;
+        frameRateVote.setLow(false);
+        // The pool keeps the drawables until memory is trimmed, attaching again reuses them
+        refreshDrawable.release();
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAnimationState();
+    }
+
+    /**
+     * Suspend the header while it can't be seen, e.g. in a back-stack fragment or a stopped
+     * activity, and resume it in the same visual state once it is visible again.
+     */
+    private void updateAnimationState() {
+        if (refreshDrawable == null) {
+            // Called from the super constructor
+            return;
+        }
+        if (ViewCompat.isAttachedToWindow(this) && getWindowVisibility() == VISIBLE && isShown()) {
+            headerClock.resume();
+        } else {
+            headerClock.pause();
+        }
+    }
+
+    HeaderClock getHeaderClock() {
+        return headerClock;
+    }
+
+    private void updateFrameBudget() {
+        final Display display = getDisplay();
+        if (display == null || display.getRefreshRate() <= 0) {
+            return;
+        }
+        final long frameBudgetNanos = (long) (1000000000L / display.getRefreshRate());
+        adaptiveQuality.setFrameBudgetNanos(frameBudgetNanos);
+        if (frameMetrics != null) {
+            frameMetrics.setFrameBudgetNanos(frameBudgetNanos);
+        }
+    }
+
+    private void dispatchFrameMetrics() {
+        if (onFrameMetricsListener != null && frameMetrics != null
+                && frameMetrics.getFrameCount() > 0) {
+            onFrameMetricsListener.onFrameMetrics(this, frameMetrics);
+            frameMetrics.reset();
+        }
+    }
+
     /**
      * Set a callback to override {@link TypewriterRefreshLayout#canChildScrollUp()} method. Non-null
      * callback will return the value provided by the callback and ignore all internal logic.
@@ -485,6 +1176,35 @@ public class TypewriterRefreshLayout extends ViewGroup {
         void onRefresh();
     }
 
+    /**
+     * Classes that wish to monitor how expensive the refresh header is should implement this
+     * interface.
+     */
+    public interface OnFrameMetricsListener {
+        /**
+         * Called on the UI thread every time the header is hidden after a pull or a refresh.
+         *
+         * @param parent  {@link TypewriterRefreshLayout} the metrics were collected for.
+         * @param metrics Metrics of the pull or refresh. The instance is reused afterwards.
+         */
+        void onFrameMetrics(@NonNull TypewriterRefreshLayout parent,
+                            @NonNull RefreshFrameMetrics metrics);
+    }
+
+    /**
+     * Classes that wish to know how much of the refresh animation is drawn should implement this
+     * interface.
+     */
+    public interface OnQualityChangeListener {
+        /**
+         * Called on the UI thread when the quality level changes.
+         *
+         * @param parent  {@link TypewriterRefreshLayout} whose quality changed.
+         * @param quality New quality level, see {@link TypewriterRefreshLayout#setQuality(int)}.
+         */
+        void onQualityChanged(@NonNull TypewriterRefreshLayout parent, int quality);
+    }
+
     /**
      * Classes that wish to override {@link TypewriterRefreshLayout#canChildScrollUp()} method
      * behavior should implement this interface.
@@ -0,0 +1,93 @@
+package com.github.ilyagh;
+
+import java.util.Random;
+
+import static com.github.ilyagh.TypewriterAnimationModel.EMPTY_KEY;
+import static com.github.ilyagh.TypewriterAnimationModel.FIRST_STEP;
+import static com.github.ilyagh.TypewriterAnimationModel.LAST_STEP;
+import static com.github.ilyagh.TypewriterAnimationModel.PAGE_CYCLE;
+import static com.github.ilyagh.TypewriterAnimationModel.SPACE_KEY;
+
+/**
+ * Key presses and carriage positions of every line of a page, generated once from a seed and
+ * stored in flat primitive arrays. At runtime the animation only looks entries up.
+ * <p>
+ * Every line has its own row. The very first line after the page is fed in types a key on the
+ * first step as well, so it gets a separate row, {@link #FIRST_LINE_ROW}.
+ * </p>
+ */
+class TypewriterTimeline {
+
+    static final int FIRST_LINE_ROW = PAGE_CYCLE;
+
+    private static final int ROWS = PAGE_CYCLE + 1;
+    private static final int TOTAL_NUMBER_OF_PHYSICAL_KEYS = 23;
+    private static final float SPACE_PROBABILITY = 0.15f;
+
+    private final int[] keys = new int[ROWS * LAST_STEP];
+    private final int[] carriageXs = new int[ROWS * LAST_STEP];
+    private final int[] motions = new int[ROWS * LAST_STEP];
+
+    /**
+     * @param seed           seed of the key choice
+     * @param carriageOffset how far the carriage travels from the center, in pixels
+     * @param returnedX      carriage position after a carriage return, in pixels
+     */
+    void build(long seed, int carriageOffset, int returnedX) {
+        final Random random = new Random(seed);
+        for (int row = 0; row < ROWS; row++) {
+            final boolean typesFirstStep = row == FIRST_LINE_ROW;
+            int carriageX = typesFirstStep ? -carriageOffset : returnedX;
+            for (int step = FIRST_STEP; step <= LAST_STEP; step++) {
+                final int index = getIndex(row, step);
+                if (step == FIRST_STEP && !typesFirstStep) {
+                    keys[index] = EMPTY_KEY;
+                    carriageXs[index] = carriageX;
+                    motions[index] = 0;
+                    continue;
+                }
+
+                int key = random.nextInt(TOTAL_NUMBER_OF_PHYSICAL_KEYS);
+                if (random.nextFloat() <= SPACE_PROBABILITY) {
+                    key = SPACE_KEY;
+                }
+                final int stepX = (int) (-carriageOffset + carriageOffset * 2 * (step / 16.6f));
+                int motion = stepX - carriageX;
+                if (key == SPACE_KEY) {
+                    motion *= 2;
+                }
+
+                keys[index] = key;
+                carriageXs[index] = stepX;
+                motions[index] = motion;
+                carriageX = stepX;
+            }
+        }
+    }
+
+    /**
+     * @return key pressed on the step, {@link TypewriterAnimationModel#SPACE_KEY} or
+     * {@link TypewriterAnimationModel#EMPTY_KEY}
+     */
+    int getKey(int row, int step) {
+        return keys[getIndex(row, step)];
+    }
+
+    /**
+     * @return carriage position once the step is typed, in pixels
+     */
+    int getCarriageX(int row, int step) {
+        return carriageXs[getIndex(row, step)];
+    }
+
+    /**
+     * @return carriage motion since the previous step, doubled for a space
+     */
+    int getMotion(int row, int step) {
+        return motions[getIndex(row, step)];
+    }
+
+    private static int getIndex(int row, int step) {
+        return row * LAST_STEP + step - FIRST_STEP;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.ilyagh;
+
+import android.os.Build;
+import android.os.Trace;
+import com.github.ilyagh.typewriter.BuildConfig;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Systrace / Perfetto sections and counters of the library, off unless enabled with
+ * {@link TypewriterRefreshLayout#setTracingEnabled(boolean)}. While off every call costs a read
+ * of a static field and nothing else: names are constants and nothing is allocated.
+ * <p>
+ * Release builds of the library are compiled without tracing, unless built with
+ * {@code -PtypewriterTracing}: {@link #IS_COMPILED} is a constant false, every method is empty
+ * and R8 or ProGuard remove their calls altogether.
+ * </p>
+ * <p>
+ * Counter tracks need {@code Trace.setCounter}, added in API 29. It is looked up reflectively
+ * as this library compiles against an older SDK, on older versions counters are not emitted.
+ * A counter is only written when its value changes, reflection boxes the value.
+ * </p>
+ */
+class TypewriterTrace {
+
+    static final String DRAW = "Typewriter draw";
+    static final String INIT = "Typewriter init";
+    static final String INTERCEPT_TOUCH = "TypewriterRefreshLayout intercept touch";
+    static final String TOUCH = "TypewriterRefreshLayout touch";
+    static final String MEASURE = "TypewriterRefreshLayout measure";
+    static final String LAYOUT = "TypewriterRefreshLayout layout";
+
+    static final int COUNTER_PHASE = 0;
+    static final int COUNTER_STEP = 1;
+    static final int COUNTER_LINE = 2;
+    static final int COUNTER_DRAG_PERCENT = 3;
+
+    private static final String[] COUNTER_NAMES = {
+            "Typewriter phase",
+            "Typewriter step",
+            "Typewriter line",
+            "Typewriter drag percent",
+    };
+
+    private static final int API_Q = 29;
+
+    /**
+     * Whether tracing is compiled in, a compile-time constant.
+     */
+    static final boolean IS_COMPILED = BuildConfig.TRACING;
+
+    private static boolean isEnabled;
+    private static Method setCounter;
+    private static final long[] counterValues = new long[COUNTER_NAMES.length];
+
+    private TypewriterTrace() {
+    }
+
+    static void setEnabled(boolean enabled) {
+        if (!IS_COMPILED) {
+            return;
+        }
+        if (enabled && setCounter == null && Build.VERSION.SDK_INT >= API_Q) {
+            try {
+                setCounter = Trace.class.getMethod("setCounter", String.class, long.class);
+            } catch (NoSuchMethodException ignored) {
+                // Sections still work
+            }
+        }
+        // Every counter is written anew in the next trace
+        Arrays.fill(counterValues, Long.MIN_VALUE);
+        isEnabled = enabled;
+    }
+
+    static boolean isEnabled() {
+        return IS_COMPILED && isEnabled;
+    }
+
+    /**
+     * @param name one of the constant section names, at most 127 characters long
+     */
+    static void beginSection(String name) {
+        if (IS_COMPILED && isEnabled) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * End the section started by the matching {@link #beginSection(String)}, on the same thread.
+     * A section open while tracing is switched off is left unmatched in the trace.
+     */
+    static void endSection() {
+        if (IS_COMPILED && isEnabled) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * @param counter one of the {@code COUNTER_} constants
+     */
+    static void setCounter(int counter, long value) {
+        if (IS_COMPILED && isEnabled && setCounter != null && counterValues[counter] != value) {
+            counterValues[counter] = value;
+            try {
+                setCounter.invoke(null, COUNTER_NAMES[counter], value);
+            } catch (Exception ignored) {
+                // Not worth failing a frame for
+            }
+        }
+    }
+}